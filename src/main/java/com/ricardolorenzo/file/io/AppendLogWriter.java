@@ -0,0 +1,266 @@
+/*
+ * AppendLogWriter class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends records to a file opened once in append mode. Any number of threads can append; the
+ * records go into a lock-free ring and a single writer thread drains it, writing a batch when it
+ * reaches the size threshold or when the flush interval expires. With {@link #SYNC_ON_FLUSH} every
+ * batch is also forced to disk.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class AppendLogWriter implements Closeable {
+    public final static int SYNC_NONE = 0;
+    public final static int SYNC_ON_FLUSH = 1;
+
+    private final FileChannel channel;
+    private final RecordRing ring;
+    private final int flush_size;
+    private final long flush_interval;
+    private final int sync;
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicLong pending_bytes;
+    private final AtomicInteger appending;
+    private final AtomicBoolean closed;
+    private final Thread writer;
+    private volatile long written_records;
+    private volatile long flushes;
+    private volatile long flush_request;
+    private volatile IOException exception;
+
+    public AppendLogWriter(final File file) throws IOException {
+        this(file, 65536, 1000, SYNC_NONE);
+    }
+
+    /**
+     * @param flushSize
+     *            buffered bytes that trigger a write
+     * @param flushInterval
+     *            maximum milliseconds a record waits before being written
+     * @param sync
+     *            {@link #SYNC_NONE} or {@link #SYNC_ON_FLUSH}
+     */
+    public AppendLogWriter(final File file, final int flushSize, final long flushInterval, final int sync)
+            throws IOException {
+        if ((flushSize <= 0) || (flushInterval <= 0)) {
+            throw new IllegalArgumentException("invalid flush thresholds");
+        }
+        if ((sync != SYNC_NONE) && (sync != SYNC_ON_FLUSH)) {
+            throw new IllegalArgumentException("invalid sync policy");
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.ring = new RecordRing(16384);
+        this.flush_size = flushSize;
+        this.flush_interval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.sync = sync;
+        this.pool = BufferPools.getPool();
+        this.buffer = this.pool.acquireDirect(flushSize);
+        this.pending_bytes = new AtomicLong();
+        this.appending = new AtomicInteger();
+        this.closed = new AtomicBoolean();
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "append-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a record to be appended. The call only blocks when the ring is full.
+     */
+    public void append(final byte[] record) throws IOException {
+        this.appending.incrementAndGet();
+        try {
+            checkState();
+            if (record.length == 0) {
+                return;
+            }
+            while (!this.ring.offer(record)) {
+                LockSupport.unpark(this.writer);
+                LockSupport.parkNanos(50000L);
+                checkState();
+            }
+            if (this.pending_bytes.addAndGet(record.length) >= this.flush_size) {
+                LockSupport.unpark(this.writer);
+            }
+        } finally {
+            this.appending.decrementAndGet();
+        }
+    }
+
+    public void append(final String record) throws IOException {
+        append(record.getBytes());
+    }
+
+    private void checkState() throws IOException {
+        if (this.exception != null) {
+            throw this.exception;
+        }
+        if (this.closed.get()) {
+            throw new IOException("log writer closed");
+        }
+    }
+
+    /**
+     * Write the pending records and close the file. Appends already in progress when the writer is
+     * closed are written too; later ones fail.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        while (this.appending.get() > 0) {
+            LockSupport.unpark(this.writer);
+            LockSupport.parkNanos(50000L);
+        }
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.exception == null) {
+            // the writer may have stopped before the last appends were published
+            writeLoop();
+        }
+        try {
+            if ((this.exception == null) && (this.sync == SYNC_ON_FLUSH)) {
+                this.channel.force(false);
+            }
+        } finally {
+            this.channel.close();
+            this.pool.releaseDirect(this.buffer);
+        }
+        if (this.exception != null) {
+            throw this.exception;
+        }
+    }
+
+    /**
+     * Wait until every record appended before this call has been written
+     */
+    public void flush() throws IOException {
+        checkState();
+        final long target = this.ring.getClaimed();
+        this.flush_request = target;
+        while (this.written_records < target) {
+            LockSupport.unpark(this.writer);
+            LockSupport.parkNanos(100000L);
+            if (this.exception != null) {
+                throw this.exception;
+            }
+        }
+    }
+
+    /**
+     * Number of batches written so far
+     */
+    public long getFlushes() {
+        return this.flushes;
+    }
+
+    /**
+     * Bytes appended and not yet written
+     */
+    public long getPendingBytes() {
+        return this.pending_bytes.get();
+    }
+
+    public long getWrittenRecords() {
+        return this.written_records;
+    }
+
+    private void write(final long records) throws IOException {
+        this.buffer.flip();
+        final int length = this.buffer.remaining();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+        if (this.sync == SYNC_ON_FLUSH) {
+            this.channel.force(false);
+        }
+        this.pending_bytes.addAndGet(-length);
+        this.written_records = records;
+        this.flushes++;
+    }
+
+    private void writeLoop() {
+        long last = System.nanoTime();
+        byte[] record = null;
+        int offset = 0;
+        try {
+            for (;;) {
+                if (record == null) {
+                    record = this.ring.poll();
+                    offset = 0;
+                }
+                if (record != null) {
+                    final int length = Math.min(record.length - offset, this.buffer.remaining());
+                    this.buffer.put(record, offset, length);
+                    offset += length;
+                    if (offset == record.length) {
+                        record = null;
+                    }
+                    if ((this.buffer.position() < this.flush_size) && (record == null)) {
+                        continue;
+                    }
+                }
+
+                final long now = System.nanoTime();
+                final boolean empty = (record == null) && (this.ring.getConsumed() == this.ring.getClaimed());
+                if ((this.buffer.position() > 0)
+                        && ((this.buffer.position() >= this.flush_size) || !this.buffer.hasRemaining()
+                                || (now - last >= this.flush_interval)
+                                || (this.flush_request > this.written_records) || (this.closed.get() && empty))) {
+                    write(this.ring.getConsumed() - ((record != null) ? 1 : 0));
+                    last = now;
+                } else if (record == null) {
+                    if (this.closed.get() && empty) {
+                        return;
+                    }
+                    if (this.buffer.position() == 0) {
+                        last = now;
+                    }
+                    LockSupport.parkNanos(Math.max(1000L, this.flush_interval - (now - last)));
+                }
+            }
+        } catch (final IOException e) {
+            this.exception = e;
+        }
+    }
+}
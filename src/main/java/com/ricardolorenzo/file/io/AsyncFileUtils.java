@@ -0,0 +1,240 @@
+/*
+ * AsyncFileUtils class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Non-blocking counterpart of {@link FileUtils}. File reads run on an
+ * <code>AsynchronousFileChannel</code>, the rest of the operations run the synchronous
+ * implementation on the configured executor, so they take the same file locks. Any executor can be
+ * configured, including a virtual thread per task executor on runtimes that provide one.
+ * <p>
+ * Cancelling a returned future interrupts the running operation. Futures derived from it with
+ * <code>thenApply</code> and similar methods do not propagate their cancellation back.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class AsyncFileUtils {
+    private static class TaskFuture<T> extends CompletableFuture<T> {
+        private volatile Future<?> task;
+        private volatile AsynchronousFileChannel channel;
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                if (this.task != null) {
+                    this.task.cancel(true);
+                }
+                closeQuietly(this.channel);
+            }
+            return cancelled;
+        }
+    }
+
+    private static volatile ExecutorService executor;
+
+    private static void closeQuietly(final AsynchronousFileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (final IOException e) {
+            // nothing
+        }
+    }
+
+    public static CompletableFuture<Void> compress(final int type, final File input, final File output) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                FileUtils.compress(type, input, output);
+                return null;
+            }
+        });
+    }
+
+    public static CompletableFuture<CopyStatistics> copyFile(final File f1, final File f2) {
+        return submit(new Callable<CopyStatistics>() {
+            @Override
+            public CopyStatistics call() throws Exception {
+                return FileUtils.copyFileWithStatistics(f1, f2);
+            }
+        });
+    }
+
+    public static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (AsyncFileUtils.class) {
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r, "async-file-" + this.count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Read the whole file through an <code>AsynchronousFileChannel</code> bound to the executor.
+     * The caller is not blocked, but on platforms without native asynchronous file I/O, such as
+     * Linux, the reads block a thread of the executor.
+     */
+    public static CompletableFuture<byte[]> readFile(final File file) {
+        final TaskFuture<byte[]> future = new TaskFuture<byte[]>();
+        try {
+            final AsynchronousFileChannel channel = AsynchronousFileChannel.open(file.toPath(),
+                    Collections.singleton(StandardOpenOption.READ), getExecutor());
+            future.channel = channel;
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                closeQuietly(channel);
+                future.completeExceptionally(new IOException("file too large to be read at once"));
+                return future;
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            channel.read(buffer, 0L, null, new CompletionHandler<Integer, Void>() {
+                private long position = 0;
+
+                @Override
+                public void completed(final Integer result, final Void attachment) {
+                    if ((result > 0) && buffer.hasRemaining()) {
+                        this.position += result;
+                        channel.read(buffer, this.position, null, this);
+                        return;
+                    }
+                    closeQuietly(channel);
+                    final byte[] content = buffer.array();
+                    if (buffer.position() < content.length) {
+                        final byte[] read = new byte[buffer.position()];
+                        System.arraycopy(content, 0, read, 0, read.length);
+                        future.complete(read);
+                    } else {
+                        future.complete(content);
+                    }
+                }
+
+                @Override
+                public void failed(final Throwable exception, final Void attachment) {
+                    closeQuietly(channel);
+                    future.completeExceptionally(exception);
+                }
+            });
+        } catch (final IOException e) {
+            closeQuietly(future.channel);
+            future.completeExceptionally(e);
+        } catch (final RejectedExecutionException e) {
+            closeQuietly(future.channel);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public static CompletableFuture<String> readFileAsString(final File file) {
+        return readFile(file).thenApply(new Function<byte[], String>() {
+            @Override
+            public String apply(final byte[] content) {
+                return new String(content);
+            }
+        });
+    }
+
+    /**
+     * Set the executor used to run the operations. The previous executor is not shut down.
+     */
+    public static void setExecutor(final ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("invalid executor");
+        }
+        AsyncFileUtils.executor = executor;
+    }
+
+    private static <T> CompletableFuture<T> submit(final Callable<T> callable) {
+        final TaskFuture<T> future = new TaskFuture<T>();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(callable.call());
+                } catch (final Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+        try {
+            future.task = getExecutor().submit(task);
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public static CompletableFuture<Boolean> updateFile(final File f1, final File f2) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return FileUtils.updateFile(f1, f2);
+            }
+        });
+    }
+
+    public static CompletableFuture<Boolean> writeFile(final File file, final byte[] content) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return FileUtils.writeFile(file, content);
+            }
+        });
+    }
+
+    public static CompletableFuture<Boolean> writeFileAtomic(final File file, final byte[] content) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return FileUtils.writeFileAtomic(file, content);
+            }
+        });
+    }
+}
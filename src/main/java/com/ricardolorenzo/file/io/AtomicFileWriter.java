@@ -0,0 +1,104 @@
+/*
+ * AtomicFileWriter class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces file contents atomically. The content is written into a sibling temporary file, forced
+ * to disk and then moved over the target, so readers never see a partially written file.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+class AtomicFileWriter {
+    static File createTemporaryFile(final File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        return File.createTempFile("." + file.getName() + ".", ".tmp", parent);
+    }
+
+    /**
+     * Write the content into a new temporary file next to the target. The returned stream is still
+     * open, so the caller can force it.
+     */
+    static FileOutputStream writeTemporaryFile(final File temporary, final byte[] content) throws IOException {
+        final FileOutputStream os = new FileOutputStream(temporary);
+        try {
+            final FileChannel channel = os.getChannel();
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (final IOException e) {
+            IOStreamUtils.closeQuietly(os);
+            throw e;
+        }
+        return os;
+    }
+
+    static void move(final File temporary, final File file) throws IOException {
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Force the directory entry changes to disk. Not every platform can open a directory, in that
+     * case the rename durability is left to the file system.
+     */
+    static void syncDirectory(final File directory) {
+        try {
+            final FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (final IOException e) {
+            // nothing
+        }
+    }
+
+    static void write(final File file, final byte[] content) throws IOException {
+        final File temporary = createTemporaryFile(file);
+        try {
+            final FileOutputStream os = writeTemporaryFile(temporary, content);
+            try {
+                os.getChannel().force(true);
+            } finally {
+                IOStreamUtils.closeQuietly(os);
+            }
+            move(temporary, file);
+        } finally {
+            if (temporary.exists()) {
+                temporary.delete();
+            }
+        }
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+}
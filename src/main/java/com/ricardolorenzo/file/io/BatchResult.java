@@ -0,0 +1,50 @@
+/*
+ * BatchResult class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Per file outcome of a batch operation. Every file of the batch appears either in the results or
+ * in the errors.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class BatchResult<T> {
+    private final Map<File, T> results;
+    private final Map<File, Exception> errors;
+
+    public BatchResult(final Map<File, T> results, final Map<File, Exception> errors) {
+        this.results = Collections.unmodifiableMap(results);
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+    public Map<File, Exception> getErrors() {
+        return this.errors;
+    }
+
+    public Map<File, T> getResults() {
+        return this.results;
+    }
+
+    public boolean isSuccessful() {
+        return this.errors.isEmpty();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * BufferPool class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Source of reusable I/O buffers. Every buffer acquired from a pool must be released back to the
+ * same pool once the caller is done with it.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public interface BufferPool {
+    /**
+     * Acquire a heap buffer of at least <code>size</code> bytes
+     */
+    public byte[] acquireArray(int size);
+
+    /**
+     * Acquire a cleared direct buffer with at least <code>size</code> bytes of capacity
+     */
+    public ByteBuffer acquireDirect(int size);
+
+    /**
+     * Number of requests served from pooled buffers
+     */
+    public long getHits();
+
+    /**
+     * Number of requests that needed a new allocation
+     */
+    public long getMisses();
+
+    /**
+     * Bytes held by buffers that were acquired and not yet released
+     */
+    public long getOutstandingBytes();
+
+    public void releaseArray(byte[] buffer);
+
+    public void releaseDirect(ByteBuffer buffer);
+}
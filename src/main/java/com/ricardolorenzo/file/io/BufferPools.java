@@ -0,0 +1,59 @@
+/*
+ * BufferPools class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * Holds the buffer pool used by the copy, hash and compression paths of this library
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class BufferPools {
+    public final static int DEFAULT_BUFFER_SIZE = 8192;
+    public final static int FILE_BUFFER_SIZE = 65536;
+    public final static int DIRECT_BUFFER_SIZE = 65536;
+
+    private static volatile BufferPool pool = new DefaultBufferPool();
+
+    /**
+     * Buffer size suited to the given stream. File streams get large buffers, in-memory streams
+     * get no more than what they hold.
+     */
+    public static int getBufferSize(final InputStream is) {
+        if (is instanceof FileInputStream) {
+            return FILE_BUFFER_SIZE;
+        } else if (is instanceof ByteArrayInputStream) {
+            return Math.max(512, Math.min(((ByteArrayInputStream) is).available(), FILE_BUFFER_SIZE));
+        }
+        return DEFAULT_BUFFER_SIZE;
+    }
+
+    public static BufferPool getPool() {
+        return pool;
+    }
+
+    public static void setPool(final BufferPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("invalid buffer pool");
+        }
+        BufferPools.pool = pool;
+    }
+}
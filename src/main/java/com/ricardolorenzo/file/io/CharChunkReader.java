@@ -0,0 +1,108 @@
+/*
+ * CharChunkReader class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes a text file in fixed size chunks of characters, so the file can be processed in
+ * constant memory. The character buffer and the decoder are reused between chunks, and malformed
+ * input is replaced as <code>new String(byte[], Charset)</code> does.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class CharChunkReader implements Closeable {
+    private final FileInputStream is;
+    private final FileChannel channel;
+    private final CharsetDecoder decoder;
+    private final BufferPool pool;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private boolean eof;
+    private boolean finished;
+
+    public CharChunkReader(final File file, final Charset charset, final int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("invalid chunk size");
+        }
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(chunkSize);
+        this.is = new FileInputStream(file);
+        this.channel = this.is.getChannel();
+        this.pool = BufferPools.getPool();
+        this.bytes = this.pool.acquireDirect(BufferPools.DIRECT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void close() {
+        this.finished = true;
+        if (this.channel.isOpen()) {
+            IOStreamUtils.closeQuietly(this.is);
+            this.pool.releaseDirect(this.bytes);
+        }
+    }
+
+    /**
+     * Decode the next chunk. The returned buffer is reused by the following call.
+     * 
+     * @return the decoded characters, or <code>null</code> at the end of the file
+     */
+    public CharBuffer next() throws IOException {
+        if (this.finished) {
+            return null;
+        }
+        this.chars.clear();
+        while (this.chars.hasRemaining()) {
+            if (!this.eof && (this.channel.read(this.bytes) < 0)) {
+                this.eof = true;
+            }
+            this.bytes.flip();
+            final CoderResult result = this.decoder.decode(this.bytes, this.chars, this.eof);
+            this.bytes.compact();
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                break;
+            }
+            if (this.eof) {
+                if (this.decoder.flush(this.chars).isOverflow()) {
+                    break;
+                }
+                this.finished = true;
+                break;
+            }
+        }
+        this.chars.flip();
+        if (this.chars.hasRemaining()) {
+            return this.chars;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * ChunkFlow class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+/**
+ * Reactive streams interfaces used to stream file chunks with backpressure. They have the same
+ * methods and contracts as <code>java.util.concurrent.Flow</code>, which is not available on the
+ * Java version this library targets, so adapting them to <code>Flow</code> is a one line
+ * delegation.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public final class ChunkFlow {
+    public static interface Publisher<T> {
+        public void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public static interface Subscriber<T> {
+        public void onSubscribe(Subscription subscription);
+
+        public void onNext(T item);
+
+        public void onError(Throwable throwable);
+
+        public void onComplete();
+    }
+
+    public static interface Subscription {
+        public void request(long n);
+
+        public void cancel();
+    }
+
+    public static interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+
+    private ChunkFlow() {
+    }
+}
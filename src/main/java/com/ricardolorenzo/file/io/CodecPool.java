@@ -0,0 +1,224 @@
+/*
+ * CodecPool class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pool of {@link Deflater} and {@link Inflater} instances by compression level and wrapping mode.
+ * Instances are reset when released, a bounded number of idle instances is kept for every level
+ * and mode, and any instance not kept is ended straight away to free its native zlib memory.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class CodecPool {
+    public final static int DEFAULT_MAX_IDLE = 8;
+    private static final int LEVELS = 11;
+
+    private static volatile CodecPool pool = new CodecPool();
+
+    private final Queue<Deflater>[] deflaters;
+    private final Queue<Inflater>[] inflaters;
+    private final AtomicInteger[] idle_counts;
+    private final Map<Object, Integer> outstanding;
+    private final int max_idle;
+    private final AtomicInteger native_instances;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public CodecPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param maxIdle
+     *            maximum number of idle instances kept for every level and mode
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public CodecPool(final int maxIdle) {
+        this.deflaters = new Queue[LEVELS * 2];
+        this.inflaters = new Queue[2];
+        this.idle_counts = new AtomicInteger[LEVELS * 2 + 2];
+        for (int i = 0; i < this.deflaters.length; i++) {
+            this.deflaters[i] = new ConcurrentLinkedQueue<Deflater>();
+        }
+        for (int i = 0; i < this.inflaters.length; i++) {
+            this.inflaters[i] = new ConcurrentLinkedQueue<Inflater>();
+        }
+        for (int i = 0; i < this.idle_counts.length; i++) {
+            this.idle_counts[i] = new AtomicInteger();
+        }
+        this.outstanding = new ConcurrentHashMap<Object, Integer>();
+        this.max_idle = maxIdle;
+        this.native_instances = new AtomicInteger();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public static CodecPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Install the pool used by the library
+     */
+    public static void setPool(final CodecPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("invalid codec pool");
+        }
+        CodecPool.pool = pool;
+    }
+
+    private static int getDeflaterKey(final int level, final boolean nowrap) {
+        if ((level < Deflater.DEFAULT_COMPRESSION) || (level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("invalid compression level");
+        }
+        return (level + 1) * 2 + (nowrap ? 1 : 0);
+    }
+
+    public Deflater acquireDeflater(final int level, final boolean nowrap) {
+        final int key = getDeflaterKey(level, nowrap);
+        Deflater deflater = this.deflaters[key].poll();
+        if (deflater != null) {
+            this.idle_counts[key].decrementAndGet();
+            this.hits.incrementAndGet();
+        } else {
+            deflater = new Deflater(level, nowrap);
+            this.native_instances.incrementAndGet();
+            this.misses.incrementAndGet();
+        }
+        this.outstanding.put(deflater, key);
+        return deflater;
+    }
+
+    public Inflater acquireInflater(final boolean nowrap) {
+        final int key = nowrap ? 1 : 0;
+        Inflater inflater = this.inflaters[key].poll();
+        if (inflater != null) {
+            this.idle_counts[LEVELS * 2 + key].decrementAndGet();
+            this.hits.incrementAndGet();
+        } else {
+            inflater = new Inflater(nowrap);
+            this.native_instances.incrementAndGet();
+            this.misses.incrementAndGet();
+        }
+        this.outstanding.put(inflater, key);
+        return inflater;
+    }
+
+    /**
+     * End every idle instance
+     */
+    public void clear() {
+        for (int i = 0; i < this.deflaters.length; i++) {
+            for (Deflater deflater = this.deflaters[i].poll(); deflater != null; deflater = this.deflaters[i].poll()) {
+                this.idle_counts[i].decrementAndGet();
+                deflater.end();
+                this.native_instances.decrementAndGet();
+            }
+        }
+        for (int i = 0; i < this.inflaters.length; i++) {
+            for (Inflater inflater = this.inflaters[i].poll(); inflater != null; inflater = this.inflaters[i].poll()) {
+                this.idle_counts[LEVELS * 2 + i].decrementAndGet();
+                inflater.end();
+                this.native_instances.decrementAndGet();
+            }
+        }
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of instances created by the pool and not ended yet, idle or in use, all
+     * of them holding native zlib memory
+     */
+    public int getNativeInstances() {
+        return this.native_instances.get();
+    }
+
+    public int getOutstanding() {
+        return this.outstanding.size();
+    }
+
+    /**
+     * Return a deflater to the pool. Deflaters not acquired from this pool, or not fitting in it,
+     * are ended.
+     */
+    public void releaseDeflater(final Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+        final Integer key = this.outstanding.remove(deflater);
+        if (key == null) {
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        deflater.setLevel(key / 2 - 1);
+        deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+        if (this.idle_counts[key].incrementAndGet() <= this.max_idle) {
+            this.deflaters[key].offer(deflater);
+        } else {
+            this.idle_counts[key].decrementAndGet();
+            deflater.end();
+            this.native_instances.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return an inflater to the pool. Inflaters not acquired from this pool, or not fitting in it,
+     * are ended.
+     */
+    public void releaseInflater(final Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+        final Integer key = this.outstanding.remove(inflater);
+        if (key == null) {
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        if (this.idle_counts[LEVELS * 2 + key].incrementAndGet() <= this.max_idle) {
+            this.inflaters[key].offer(inflater);
+        } else {
+            this.idle_counts[LEVELS * 2 + key].decrementAndGet();
+            inflater.end();
+            this.native_instances.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + this.hits.get() + ", misses=" + this.misses.get() + ", native="
+                + this.native_instances.get() + ", outstanding=" + this.outstanding.size();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * CompressionOutputStream class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compression stream returned by {@link IOStreamUtils}, applying a {@link CompressionPolicy}. With
+ * an adaptive policy the data is held until the sample is complete, or the stream is flushed or
+ * closed, and then the level is chosen.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class CompressionOutputStream extends FilterOutputStream {
+    private final int type;
+    private final CompressionPolicy policy;
+    private final OutputStream target;
+    private byte[] sample;
+    private int sample_length;
+    private int level;
+
+    CompressionOutputStream(final int type, final OutputStream os, final CompressionPolicy policy)
+            throws IOException {
+        super(null);
+        this.type = type;
+        this.policy = policy;
+        this.target = os;
+        if (policy.isAdaptive()) {
+            this.sample = new byte[policy.getSampleSize()];
+        } else {
+            start();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.out == null) {
+            try {
+                start();
+            } catch (final IOException e) {
+                IOStreamUtils.closeQuietly(this.target);
+                throw e;
+            }
+        }
+        this.out.close();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.out == null) {
+            start();
+        }
+        this.out.flush();
+    }
+
+    /**
+     * Returns the level chosen for this stream, or <code>-2</code> while the sample is not complete
+     */
+    public int getLevel() {
+        return this.out == null ? -2 : this.level;
+    }
+
+    public CompressionPolicy getPolicy() {
+        return this.policy;
+    }
+
+    private void start() throws IOException {
+        this.level = this.policy.getLevel(this.sample, this.sample_length);
+        try {
+            this.out = IOStreamUtils.createCompressionStream(this.type, this.target, this.level,
+                    this.policy.getStrategy());
+        } catch (final NoSuchMethodException e) {
+            throw new IOException("invalid compression type " + this.type);
+        }
+        if (this.sample_length > 0) {
+            this.out.write(this.sample, 0, this.sample_length);
+        }
+        this.sample = null;
+    }
+
+    @Override
+    public void write(final byte[] b, final int offset, final int length) throws IOException {
+        if (this.out == null) {
+            final int count = Math.min(length, this.sample.length - this.sample_length);
+            System.arraycopy(b, offset, this.sample, this.sample_length, count);
+            this.sample_length += count;
+            if (this.sample_length < this.sample.length) {
+                return;
+            }
+            start();
+            this.out.write(b, offset + count, length - count);
+        } else {
+            this.out.write(b, offset, length);
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+}
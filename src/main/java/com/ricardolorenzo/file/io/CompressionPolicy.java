@@ -0,0 +1,130 @@
+/*
+ * CompressionPolicy class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.util.zip.Deflater;
+
+/**
+ * Compression level and strategy used by {@link IOStreamUtils}. An adaptive policy compresses a
+ * sample of the beginning of every stream at the fastest level and, if it does not shrink enough,
+ * stores the data or uses the fastest level instead of the configured one.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class CompressionPolicy {
+    public final static int DEFAULT_SAMPLE_SIZE = 65536;
+    public final static CompressionPolicy DEFAULT = new CompressionPolicy(Deflater.DEFAULT_COMPRESSION,
+            Deflater.DEFAULT_STRATEGY);
+
+    /**
+     * Sample ratios above which the data is stored or compressed at the fastest level
+     */
+    private static final double STORED_RATIO = 0.98;
+    private static final double FAST_RATIO = 0.9;
+
+    private final int level;
+    private final int strategy;
+    private final boolean adaptive;
+    private final int sample_size;
+
+    public CompressionPolicy(final int level, final int strategy) {
+        this(level, strategy, false, DEFAULT_SAMPLE_SIZE);
+    }
+
+    private CompressionPolicy(final int level, final int strategy, final boolean adaptive, final int sampleSize) {
+        if ((level < Deflater.DEFAULT_COMPRESSION) || (level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("invalid compression level");
+        }
+        if ((strategy != Deflater.DEFAULT_STRATEGY) && (strategy != Deflater.FILTERED)
+                && (strategy != Deflater.HUFFMAN_ONLY)) {
+            throw new IllegalArgumentException("invalid compression strategy");
+        }
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("invalid sample size");
+        }
+        this.level = level;
+        this.strategy = strategy;
+        this.adaptive = adaptive;
+        this.sample_size = sampleSize;
+    }
+
+    /**
+     * Returns an adaptive policy using the given level for the data that compresses well
+     */
+    public static CompressionPolicy adaptive(final int level) {
+        return adaptive(level, Deflater.DEFAULT_STRATEGY, DEFAULT_SAMPLE_SIZE);
+    }
+
+    public static CompressionPolicy adaptive(final int level, final int strategy, final int sampleSize) {
+        return new CompressionPolicy(level, strategy, true, sampleSize);
+    }
+
+    /**
+     * Returns the level to use for a stream starting with the given sample
+     */
+    public int getLevel(final byte[] sample, final int length) {
+        if (!this.adaptive || (length == 0)) {
+            return this.level;
+        }
+        final double ratio = (double) getCompressedSize(sample, length) / length;
+        if (ratio > STORED_RATIO) {
+            return Deflater.NO_COMPRESSION;
+        } else if (ratio > FAST_RATIO) {
+            return Deflater.BEST_SPEED;
+        }
+        return this.level;
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    public int getSampleSize() {
+        return this.sample_size;
+    }
+
+    public int getStrategy() {
+        return this.strategy;
+    }
+
+    public boolean isAdaptive() {
+        return this.adaptive;
+    }
+
+    private static long getCompressedSize(final byte[] sample, final int length) {
+        final BufferPool pool = BufferPools.getPool();
+        final byte[] buffer = pool.acquireArray(BufferPools.DEFAULT_BUFFER_SIZE);
+        final Deflater deflater = CodecPool.getPool().acquireDeflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflater.deflate(buffer);
+            }
+            return deflater.getBytesWritten();
+        } finally {
+            CodecPool.getPool().releaseDeflater(deflater);
+            pool.releaseArray(buffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "level=" + this.level + ", strategy=" + this.strategy + ", adaptive=" + this.adaptive;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * CompressionProcessor class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Processor stage compressing a stream of chunks with any of the {@link IOStreamUtils}
+ * compression types. It only requests a chunk from upstream when the downstream subscriber has
+ * outstanding demand and no compressed chunk is waiting, so backpressure goes through the stage.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class CompressionProcessor implements ChunkFlow.Processor<ByteBuffer, ByteBuffer> {
+    private final ByteArrayOutputStream sink;
+    private final OutputStream compressor;
+    private final Queue<ByteBuffer> pending;
+    private ChunkFlow.Subscription upstream;
+    private ChunkFlow.Subscriber<? super ByteBuffer> downstream;
+    private long demand;
+    private int requested;
+    private boolean upstream_done;
+    private boolean terminated;
+    private boolean cancelled;
+    private boolean draining;
+    private boolean missed;
+    private Throwable error;
+    private byte[] chunk;
+
+    public CompressionProcessor(final int type) throws IOException, NoSuchMethodException {
+        this.sink = new ByteArrayOutputStream();
+        this.compressor = IOStreamUtils.getCompressionStream(type, this.sink);
+        this.pending = new ArrayDeque<ByteBuffer>();
+        this.chunk = new byte[0];
+    }
+
+    private void collect() {
+        if (this.sink.size() > 0) {
+            this.pending.add(ByteBuffer.wrap(this.sink.toByteArray()));
+            this.sink.reset();
+        }
+    }
+
+    private void drain() {
+        if (this.draining) {
+            this.missed = true;
+            return;
+        }
+        this.draining = true;
+        try {
+            do {
+                this.missed = false;
+                if (this.downstream == null) {
+                    return;
+                }
+                if (this.cancelled) {
+                    this.pending.clear();
+                    return;
+                }
+                while ((this.demand > 0) && !this.pending.isEmpty()) {
+                    this.demand--;
+                    this.downstream.onNext(this.pending.poll());
+                }
+                if (this.terminated) {
+                    return;
+                }
+                if (this.pending.isEmpty() && this.upstream_done) {
+                    this.terminated = true;
+                    if (this.error != null) {
+                        this.downstream.onError(this.error);
+                    } else {
+                        this.downstream.onComplete();
+                    }
+                } else if (this.pending.isEmpty() && (this.demand > 0) && (this.requested == 0)
+                        && (this.upstream != null) && !this.upstream_done) {
+                    this.requested++;
+                    this.upstream.request(1);
+                }
+            } while (this.missed);
+        } finally {
+            this.draining = false;
+        }
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        try {
+            this.compressor.close();
+            collect();
+        } catch (final IOException e) {
+            this.pending.clear();
+            this.error = e;
+        }
+        this.upstream_done = true;
+        drain();
+    }
+
+    @Override
+    public synchronized void onError(final Throwable throwable) {
+        IOStreamUtils.closeQuietly(this.compressor);
+        this.pending.clear();
+        this.error = throwable;
+        this.upstream_done = true;
+        drain();
+    }
+
+    @Override
+    public synchronized void onNext(final ByteBuffer item) {
+        this.requested--;
+        try {
+            if (this.chunk.length < item.remaining()) {
+                this.chunk = new byte[item.remaining()];
+            }
+            final int length = item.remaining();
+            item.get(this.chunk, 0, length);
+            this.compressor.write(this.chunk, 0, length);
+            collect();
+        } catch (final IOException e) {
+            this.upstream.cancel();
+            onError(e);
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public synchronized void onSubscribe(final ChunkFlow.Subscription subscription) {
+        if (this.upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        this.upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public synchronized void subscribe(final ChunkFlow.Subscriber<? super ByteBuffer> subscriber) {
+        if (this.downstream != null) {
+            throw new IllegalStateException("processor already subscribed");
+        }
+        this.downstream = subscriber;
+        subscriber.onSubscribe(new ChunkFlow.Subscription() {
+            @Override
+            public void cancel() {
+                synchronized (CompressionProcessor.this) {
+                    CompressionProcessor.this.cancelled = true;
+                    if (CompressionProcessor.this.upstream != null) {
+                        CompressionProcessor.this.upstream.cancel();
+                    }
+                    IOStreamUtils.closeQuietly(CompressionProcessor.this.compressor);
+                }
+            }
+
+            @Override
+            public void request(final long n) {
+                synchronized (CompressionProcessor.this) {
+                    if (n <= 0) {
+                        CompressionProcessor.this.onError(new IllegalArgumentException(
+                                "non-positive subscription request"));
+                        return;
+                    }
+                    CompressionProcessor.this.demand += n;
+                    if (CompressionProcessor.this.demand < 0) {
+                        CompressionProcessor.this.demand = Long.MAX_VALUE;
+                    }
+                    drain();
+                }
+            }
+        });
+        drain();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * CopyBenchmark class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the file copy paths, and on Linux how much page cache the first copy
+ * of each path leaves behind. Run it with the file size in MB, the number of rounds and the
+ * directory for the test files, for example
+ * <code>java com.ricardolorenzo.file.io.CopyBenchmark 256 5 /var/tmp</code>.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class CopyBenchmark {
+    private static final String[] MODES = { "stream", "channel", "direct" };
+
+    private static CopyStatistics copy(final String mode, final File source, final File destination)
+            throws IOException {
+        if ("channel".equals(mode)) {
+            return FileChannelCopier.copy(source, destination);
+        } else if ("direct".equals(mode)) {
+            return DirectIOCopier.copy(source, destination);
+        }
+        final long start = System.nanoTime();
+        final FileInputStream is = new FileInputStream(source);
+        FileOutputStream os = null;
+        try {
+            os = new FileOutputStream(destination);
+            IOStreamUtils.write(is, os);
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+            IOStreamUtils.closeQuietly(os);
+        }
+        return new CopyStatistics(1, source.length(), 0, System.nanoTime() - start);
+    }
+
+    private static void createFile(final File file, final long size) throws IOException {
+        final byte[] buffer = new byte[BufferPools.FILE_BUFFER_SIZE];
+        new Random(size).nextBytes(buffer);
+        final FileOutputStream os = new FileOutputStream(file);
+        try {
+            for (long written = 0; written < size; written += buffer.length) {
+                os.write(buffer, 0, (int) Math.min(buffer.length, size - written));
+            }
+        } finally {
+            IOStreamUtils.closeQuietly(os);
+        }
+    }
+
+    /**
+     * Returns the size of the page cache, or -1 if it is not known
+     */
+    private static long getCachedBytes() {
+        try {
+            for (final String line : Files.readAllLines(Paths.get("/proc/meminfo"), Charset.forName("US-ASCII"))) {
+                if (line.startsWith("Cached:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) << 10;
+                }
+            }
+        } catch (final Exception e) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final long size = (args.length > 0 ? Long.parseLong(args[0]) : 256) << 20;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final File directory = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"));
+        final File source = File.createTempFile("benchmark", ".src", directory);
+        final File destination = File.createTempFile("benchmark", ".dst", directory);
+        try {
+            createFile(source, size);
+            for (final String mode : MODES) {
+                destination.delete();
+                final long cached = getCachedBytes();
+                copy(mode, source, destination);
+                final long cacheGrowth = getCachedBytes() - cached;
+                CopyStatistics statistics = new CopyStatistics(0, 0, 0, 0);
+                for (int round = 0; round < rounds; round++) {
+                    statistics = statistics.add(copy(mode, source, destination));
+                }
+                System.out.println(String.format("%-8s %8.1f MB/s, page cache %+d MB", mode,
+                        statistics.getThroughput() / 1048576, cached < 0 ? 0 : cacheGrowth >> 20));
+            }
+        } finally {
+            source.delete();
+            destination.delete();
+        }
+    }
+}
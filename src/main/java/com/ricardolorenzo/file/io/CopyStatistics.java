@@ -0,0 +1,93 @@
+/*
+ * CopyStatistics class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+/**
+ * Bytes copied by a copy operation and how they were moved
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class CopyStatistics {
+    private final long files;
+    private final long bytes;
+    private final long transferred_bytes;
+    private final long elapsed_time;
+
+    public CopyStatistics(final long files, final long bytes, final long transferredBytes, final long elapsedTime) {
+        this.files = files;
+        this.bytes = bytes;
+        this.transferred_bytes = transferredBytes;
+        this.elapsed_time = elapsedTime;
+    }
+
+    public CopyStatistics add(final CopyStatistics statistics) {
+        if (statistics == null) {
+            return this;
+        }
+        return new CopyStatistics(this.files + statistics.files, this.bytes + statistics.bytes,
+                this.transferred_bytes + statistics.transferred_bytes, this.elapsed_time + statistics.elapsed_time);
+    }
+
+    /**
+     * Total bytes written into the destination
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Bytes moved by the buffered fallback path
+     */
+    public long getBufferedBytes() {
+        return this.bytes - this.transferred_bytes;
+    }
+
+    /**
+     * Elapsed time in nanoseconds
+     */
+    public long getElapsedTime() {
+        return this.elapsed_time;
+    }
+
+    public long getFiles() {
+        return this.files;
+    }
+
+    /**
+     * Throughput in bytes per second
+     */
+    public double getThroughput() {
+        if (this.elapsed_time <= 0) {
+            return 0;
+        }
+        return (this.bytes * 1000000000D) / this.elapsed_time;
+    }
+
+    /**
+     * Bytes moved by the kernel through <code>FileChannel.transferTo</code>
+     */
+    public long getTransferredBytes() {
+        return this.transferred_bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "files=" + this.files + ", bytes=" + this.bytes + ", transferred=" + this.transferred_bytes
+                + ", elapsed=" + (this.elapsed_time / 1000000L) + "ms";
+    }
+}
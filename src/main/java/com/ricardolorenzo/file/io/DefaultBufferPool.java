@@ -0,0 +1,193 @@
+/*
+ * DefaultBufferPool class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffer pool keeping one heap buffer per size class in every thread, and a bounded number of
+ * direct buffers per size class shared by all threads. Sizes are rounded up to a power of two,
+ * starting at 512 bytes.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class DefaultBufferPool implements BufferPool {
+    private static final int MIN_SIZE = 512;
+    private static final int SIZE_CLASSES = 14;
+    private static final int MAX_ARRAY_SIZE = 262144;
+
+    private final ThreadLocal<byte[][]> arrays;
+    private final Queue<ByteBuffer>[] direct_buffers;
+    private final AtomicInteger[] direct_counts;
+    private final int max_direct_buffers;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong outstanding;
+
+    public DefaultBufferPool() {
+        this(8);
+    }
+
+    /**
+     * @param maxDirectBuffers
+     *            maximum number of idle direct buffers kept for every size class
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public DefaultBufferPool(final int maxDirectBuffers) {
+        this.arrays = new ThreadLocal<byte[][]>() {
+            @Override
+            protected byte[][] initialValue() {
+                return new byte[SIZE_CLASSES][];
+            }
+        };
+        this.direct_buffers = new Queue[SIZE_CLASSES];
+        this.direct_counts = new AtomicInteger[SIZE_CLASSES];
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            this.direct_buffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+            this.direct_counts[i] = new AtomicInteger();
+        }
+        this.max_direct_buffers = maxDirectBuffers;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.outstanding = new AtomicLong();
+    }
+
+    private static int getSizeClass(final int size) {
+        int sizeClass = 0;
+        for (int classSize = MIN_SIZE; classSize < size; classSize <<= 1) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    private static int getClassSize(final int sizeClass) {
+        return MIN_SIZE << sizeClass;
+    }
+
+    /**
+     * Returns the size class of a buffer returned to the pool, or -1 if it cannot be pooled
+     */
+    private static int getPooledClass(final int capacity) {
+        if ((capacity < MIN_SIZE) || (Integer.bitCount(capacity) != 1)) {
+            return -1;
+        }
+        final int sizeClass = getSizeClass(capacity);
+        if (sizeClass >= SIZE_CLASSES) {
+            return -1;
+        }
+        return sizeClass;
+    }
+
+    @Override
+    public byte[] acquireArray(final int size) {
+        final int sizeClass = getSizeClass(size);
+        if ((sizeClass >= SIZE_CLASSES) || (getClassSize(sizeClass) > MAX_ARRAY_SIZE)) {
+            this.misses.incrementAndGet();
+            this.outstanding.addAndGet(size);
+            return new byte[size];
+        }
+        final byte[][] slots = this.arrays.get();
+        byte[] buffer = slots[sizeClass];
+        if (buffer != null) {
+            slots[sizeClass] = null;
+            this.hits.incrementAndGet();
+        } else {
+            buffer = new byte[getClassSize(sizeClass)];
+            this.misses.incrementAndGet();
+        }
+        this.outstanding.addAndGet(buffer.length);
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer acquireDirect(final int size) {
+        final int sizeClass = getSizeClass(size);
+        if (sizeClass >= SIZE_CLASSES) {
+            this.misses.incrementAndGet();
+            this.outstanding.addAndGet(size);
+            return ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer buffer = this.direct_buffers[sizeClass].poll();
+        if (buffer != null) {
+            this.direct_counts[sizeClass].decrementAndGet();
+            buffer.clear();
+            this.hits.incrementAndGet();
+        } else {
+            buffer = ByteBuffer.allocateDirect(getClassSize(sizeClass));
+            this.misses.incrementAndGet();
+        }
+        this.outstanding.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @Override
+    public long getOutstandingBytes() {
+        return this.outstanding.get();
+    }
+
+    @Override
+    public void releaseArray(final byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        this.outstanding.addAndGet(-buffer.length);
+        final int sizeClass = getPooledClass(buffer.length);
+        if ((sizeClass >= 0) && (buffer.length <= MAX_ARRAY_SIZE)) {
+            final byte[][] slots = this.arrays.get();
+            if (slots[sizeClass] == null) {
+                slots[sizeClass] = buffer;
+            }
+        }
+    }
+
+    @Override
+    public void releaseDirect(final ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        this.outstanding.addAndGet(-buffer.capacity());
+        final int sizeClass = getPooledClass(buffer.capacity());
+        if ((sizeClass >= 0) && buffer.isDirect() && !buffer.isReadOnly()) {
+            if (this.direct_counts[sizeClass].incrementAndGet() <= this.max_direct_buffers) {
+                this.direct_buffers[sizeClass].offer(buffer);
+            } else {
+                this.direct_counts[sizeClass].decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + this.hits.get() + ", misses=" + this.misses.get() + ", outstanding="
+                + this.outstanding.get();
+    }
+}
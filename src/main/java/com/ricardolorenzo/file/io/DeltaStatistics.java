@@ -0,0 +1,69 @@
+/*
+ * DeltaStatistics class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+/**
+ * Amount of data rewritten by a block delta update
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class DeltaStatistics {
+    private final long size;
+    private final long written_bytes;
+    private final int blocks;
+    private final int changed_blocks;
+
+    public DeltaStatistics(final long size, final long writtenBytes, final int blocks, final int changedBlocks) {
+        this.size = size;
+        this.written_bytes = writtenBytes;
+        this.blocks = blocks;
+        this.changed_blocks = changedBlocks;
+    }
+
+    public int getBlocks() {
+        return this.blocks;
+    }
+
+    /**
+     * Bytes that a full copy would have written and the delta update did not
+     */
+    public long getBytesSaved() {
+        return this.size - this.written_bytes;
+    }
+
+    public int getChangedBlocks() {
+        return this.changed_blocks;
+    }
+
+    /**
+     * Size of the updated file
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    public long getWrittenBytes() {
+        return this.written_bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + this.size + ", written=" + this.written_bytes + ", saved=" + getBytesSaved()
+                + ", changed blocks=" + this.changed_blocks + "/" + this.blocks;
+    }
+}
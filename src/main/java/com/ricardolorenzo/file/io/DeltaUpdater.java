@@ -0,0 +1,103 @@
+/*
+ * DeltaUpdater class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.NoSuchAlgorithmException;
+
+import com.ricardolorenzo.file.security.BlockSignature;
+
+/**
+ * Updates a file in place rewriting only the blocks that differ from the source. The signature of
+ * the destination is taken first, then the source blocks are checked against it and only the
+ * mismatching ones are written at their offset. The destination is finally truncated or extended
+ * to the source size.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class DeltaUpdater {
+    public final static int DEFAULT_BLOCK_SIZE = 65536;
+
+    private final int block_size;
+
+    public DeltaUpdater() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    public DeltaUpdater(final int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("invalid block size");
+        }
+        this.block_size = blockSize;
+    }
+
+    public DeltaStatistics update(final File source, final File destination) throws NoSuchAlgorithmException,
+            IOException {
+        if (!destination.exists()) {
+            final CopyStatistics statistics = FileChannelCopier.copy(source, destination);
+            final int blocks = (int) ((statistics.getBytes() + this.block_size - 1) / this.block_size);
+            return new DeltaStatistics(statistics.getBytes(), statistics.getBytes(), blocks, blocks);
+        }
+
+        final BlockSignature signature = BlockSignature.getSignature(destination, this.block_size);
+        final FileInputStream is = new FileInputStream(source);
+        RandomAccessFile raf = null;
+        try {
+            final FileChannel in = is.getChannel();
+            raf = new RandomAccessFile(destination, "rw");
+            final FileChannel out = raf.getChannel();
+            final long size = in.size();
+            final int blocks = (int) ((size + this.block_size - 1) / this.block_size);
+            final ByteBuffer buffer = ByteBuffer.allocate(this.block_size);
+            long written = 0;
+            int changed = 0;
+            for (int i = 0; i < blocks; i++) {
+                final long position = (long) i * this.block_size;
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer, position + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                if (!signature.matches(i, buffer.array(), 0, buffer.limit())) {
+                    long offset = position;
+                    while (buffer.hasRemaining()) {
+                        offset += out.write(buffer, offset);
+                    }
+                    written += buffer.limit();
+                    changed++;
+                }
+            }
+            if (out.size() > size) {
+                out.truncate(size);
+            }
+            return new DeltaStatistics(size, written, blocks, changed);
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+            if (raf != null) {
+                raf.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * DirectIOCopier class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Copies files bypassing the page cache, opening both files with
+ * <code>ExtendedOpenOption.DIRECT</code> and moving the data through block aligned direct buffers,
+ * so huge copies do not evict the cache of the other processes on the host. The option and the
+ * aligned buffers are only available on Java 10 and later, and not every file system accepts them;
+ * in any of those cases the copy falls back to {@link FileChannelCopier}.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class DirectIOCopier {
+    private static final int CHUNK_SIZE = 1048576;
+    private static final int DEFAULT_BLOCK_SIZE = 4096;
+    private static final OpenOption DIRECT = getDirectOption();
+    private static final Method ALIGNED_SLICE = getMethod(ByteBuffer.class, "alignedSlice", int.class);
+    private static final Method BLOCK_SIZE = getMethod(FileStore.class, "getBlockSize");
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static OpenOption getDirectOption() {
+        try {
+            final Class type = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            return (OpenOption) Enum.valueOf(type, "DIRECT");
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    private static Method getMethod(final Class<?> type, final String name, final Class<?>... parameters) {
+        try {
+            return type.getMethod(name, parameters);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static int getBlockSize(final File file) {
+        try {
+            final Object size = BLOCK_SIZE.invoke(Files.getFileStore(file.getAbsoluteFile().toPath()));
+            return (int) ((Long) size).longValue();
+        } catch (final Exception e) {
+            return DEFAULT_BLOCK_SIZE;
+        }
+    }
+
+    /**
+     * Check whether this runtime can open files for direct I/O at all
+     */
+    public static boolean isAvailable() {
+        return (DIRECT != null) && (ALIGNED_SLICE != null) && (BLOCK_SIZE != null);
+    }
+
+    /**
+     * Copy the source file into the destination without going through the page cache when
+     * possible
+     */
+    public static CopyStatistics copy(final File source, final File destination) throws IOException {
+        if (isAvailable()) {
+            final FileChannel in = openDirect(source, StandardOpenOption.READ);
+            if (in != null) {
+                final FileChannel out = openDirect(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                if (out != null) {
+                    // from here on a failure is a real I/O error, not a refusal
+                    return copyDirect(in, out, source, destination);
+                }
+                in.close();
+            }
+        }
+        return FileChannelCopier.copy(source, destination);
+    }
+
+    /**
+     * Copy between the channels opened for direct I/O, closing both
+     */
+    private static CopyStatistics copyDirect(final FileChannel in, final FileChannel out, final File source,
+            final File destination) throws IOException {
+        final long start = System.nanoTime();
+        long size = 0;
+        try {
+            try {
+                final int alignment = Math.max(getBlockSize(source), getBlockSize(destination.getAbsoluteFile()
+                        .getParentFile()));
+                final int chunk = Math.max(alignment, (CHUNK_SIZE / alignment) * alignment);
+                final BufferPool pool = BufferPools.getPool();
+                final ByteBuffer raw = pool.acquireDirect(chunk + alignment);
+                try {
+                    final ByteBuffer buffer;
+                    try {
+                        buffer = (ByteBuffer) ALIGNED_SLICE.invoke(raw, alignment);
+                    } catch (final Exception e) {
+                        throw new IOException("cannot align buffer", e);
+                    }
+
+                    long position = 0;
+                    for (;;) {
+                        buffer.clear();
+                        buffer.limit(chunk);
+                        while (buffer.hasRemaining()) {
+                            if ((in.read(buffer, position + buffer.position()) <= 0)
+                                    || ((buffer.position() % alignment) != 0)) {
+                                break;
+                            }
+                        }
+                        final int read = buffer.position();
+                        if (read == 0) {
+                            break;
+                        }
+                        final int aligned = ((read + alignment - 1) / alignment) * alignment;
+                        while (buffer.position() < aligned) {
+                            buffer.put((byte) 0);
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer, position + buffer.position());
+                        }
+                        position += read;
+                        size = position;
+                        if (read < chunk) {
+                            break;
+                        }
+                    }
+                } finally {
+                    pool.releaseDirect(raw);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        final RandomAccessFile raf = new RandomAccessFile(destination, "rw");
+        try {
+            raf.setLength(size);
+        } finally {
+            raf.close();
+        }
+        return new CopyStatistics(1, size, 0, System.nanoTime() - start);
+    }
+
+    /**
+     * Open the file with the direct I/O option, or return <code>null</code> if the file system
+     * refuses it
+     */
+    private static FileChannel openDirect(final File file, final OpenOption... options) {
+        final OpenOption[] direct = Arrays.copyOf(options, options.length + 1);
+        direct[options.length] = DIRECT;
+        try {
+            return FileChannel.open(file.toPath(), direct);
+        } catch (final IOException e) {
+            return null;
+        } catch (final UnsupportedOperationException e) {
+            return null;
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
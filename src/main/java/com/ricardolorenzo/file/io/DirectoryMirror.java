@@ -0,0 +1,279 @@
+/*
+ * DirectoryMirror class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a destination directory as a mirror of a source directory. Every source directory is
+ * watched, and the events of a burst are coalesced until the tree has been quiet for a while.
+ * Then only the changed paths are copied or deleted. A burst that never goes quiet is applied
+ * anyway after ten quiet periods. If the watch service overflows and events are
+ * lost, the whole tree is rescanned.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class DirectoryMirror implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(DirectoryMirror.class);
+
+    private final Path source;
+    private final Path destination;
+    private final FileManifest manifest;
+    private final long quiet_period;
+    private final Map<WatchKey, Path> keys;
+    private final AtomicLong events;
+    private final AtomicLong updates;
+    private final AtomicLong rescans;
+    private WatchService watcher;
+    private Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param quietPeriod
+     *            milliseconds without new events before a burst of changes is applied
+     */
+    public DirectoryMirror(final File source, final File destination, final FileManifest manifest,
+            final long quietPeriod) {
+        if (quietPeriod <= 0) {
+            throw new IllegalArgumentException("invalid quiet period");
+        }
+        this.source = source.getAbsoluteFile().toPath();
+        this.destination = destination.getAbsoluteFile().toPath();
+        this.manifest = (manifest != null) ? manifest : new FileManifest();
+        this.quiet_period = quietPeriod;
+        this.keys = new ConcurrentHashMap<WatchKey, Path>();
+        this.events = new AtomicLong();
+        this.updates = new AtomicLong();
+        this.rescans = new AtomicLong();
+    }
+
+    private void apply(final Set<Path> changes) {
+        for (final Path path : changes) {
+            final Path target = this.destination.resolve(this.source.relativize(path));
+            try {
+                if (Files.isDirectory(path)) {
+                    register(path);
+                    this.updates.addAndGet(FileUtils.syncTree(path.toFile(), target.toFile(), this.manifest));
+                } else if (Files.isRegularFile(path)) {
+                    if (FileUtils.updateFile(path.toFile(), target.toFile(), this.manifest)) {
+                        this.updates.incrementAndGet();
+                    }
+                } else if (Files.exists(target)) {
+                    delete(target.toFile());
+                    this.updates.incrementAndGet();
+                }
+            } catch (final Exception e) {
+                logger.error("cannot mirror " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.watcher != null) {
+            try {
+                this.watcher.close();
+            } catch (final IOException e) {
+                // nothing
+            }
+        }
+        if (this.thread != null) {
+            try {
+                this.thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void delete(final File file) throws IOException {
+        if (file.isDirectory()) {
+            for (final File f : file.listFiles()) {
+                delete(f);
+            }
+        }
+        if (!file.delete() && file.exists()) {
+            throw new IOException("cannot delete " + file.getAbsolutePath());
+        }
+        this.manifest.remove(file);
+    }
+
+    /**
+     * Number of watch events received
+     */
+    public long getEvents() {
+        return this.events.get();
+    }
+
+    /**
+     * Number of full rescans made, including the initial one
+     */
+    public long getRescans() {
+        return this.rescans.get();
+    }
+
+    /**
+     * Number of files copied or deleted in the destination
+     */
+    public long getUpdates() {
+        return this.updates.get();
+    }
+
+    /**
+     * Remove the destination entries that no longer exist in the source
+     */
+    private void prune(final File source, final File destination) throws IOException {
+        final File[] files = destination.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File f : files) {
+            final File s = new File(source, f.getName());
+            if (!s.exists() || (s.isDirectory() != f.isDirectory())) {
+                delete(f);
+                this.updates.incrementAndGet();
+            } else if (f.isDirectory()) {
+                prune(s, f);
+            }
+        }
+    }
+
+    private void register(final Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes)
+                    throws IOException {
+                final WatchKey key = dir.register(DirectoryMirror.this.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                DirectoryMirror.this.keys.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void rescan() throws Exception {
+        this.rescans.incrementAndGet();
+        register(this.source);
+        this.updates.addAndGet(FileUtils.syncTree(this.source.toFile(), this.destination.toFile(), this.manifest));
+        prune(this.source.toFile(), this.destination.toFile());
+    }
+
+    private void run() {
+        final Set<Path> changes = new LinkedHashSet<Path>();
+        boolean overflow = false;
+        long burst = 0;
+        while (!this.closed) {
+            try {
+                final WatchKey key;
+                if (changes.isEmpty() && !overflow) {
+                    key = this.watcher.take();
+                    burst = System.currentTimeMillis();
+                } else {
+                    key = this.watcher.poll(this.quiet_period, TimeUnit.MILLISECONDS);
+                }
+
+                if ((key == null) || (System.currentTimeMillis() - burst > this.quiet_period * 10)) {
+                    if (overflow) {
+                        rescan();
+                    } else {
+                        apply(changes);
+                    }
+                    changes.clear();
+                    overflow = false;
+                    if (key == null) {
+                        continue;
+                    }
+                    burst = System.currentTimeMillis();
+                }
+
+                final Path directory = this.keys.get(key);
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    this.events.incrementAndGet();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else if (directory != null) {
+                        changes.add(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    this.keys.remove(key);
+                }
+            } catch (final ClosedWatchServiceException e) {
+                break;
+            } catch (final InterruptedException e) {
+                break;
+            } catch (final Exception e) {
+                logger.error("directory mirror failure: " + e.getMessage());
+                overflow = true;
+            }
+        }
+    }
+
+    /**
+     * Make an initial full synchronization and start watching the source tree
+     */
+    public void start() throws Exception {
+        if (this.thread != null) {
+            throw new IllegalStateException("mirror already started");
+        }
+        this.watcher = FileSystems.getDefault().newWatchService();
+        try {
+            rescan();
+        } catch (final Exception e) {
+            try {
+                this.watcher.close();
+            } catch (final IOException ex) {
+                // nothing
+            }
+            this.watcher = null;
+            this.keys.clear();
+            throw e;
+        }
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                DirectoryMirror.this.run();
+            }
+        }, "directory-mirror");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * FileChannelCopier class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies files through <code>FileChannel.transferTo</code>, so the kernel can move the data
+ * without passing it through the heap. When the channel refuses to transfer, the rest of the file
+ * is copied using pooled direct buffers.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class FileChannelCopier {
+    private static final long SCHEDULED_CHUNK_SIZE = 1048576L;
+
+    /**
+     * Copy the source file into the destination, replacing its content
+     */
+    public static CopyStatistics copy(final File source, final File destination) throws IOException {
+        final FileInputStream is = new FileInputStream(source);
+        FileOutputStream os = null;
+        try {
+            os = new FileOutputStream(destination);
+            return copy(is.getChannel(), os.getChannel());
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+            IOStreamUtils.closeQuietly(os);
+        }
+    }
+
+    /**
+     * Copy the remaining content of the input channel, starting at its current position, into the
+     * output channel
+     */
+    public static CopyStatistics copy(final FileChannel in, final FileChannel out) throws IOException {
+        return copy(in, out, IOScheduler.CLASS_BULK);
+    }
+
+    /**
+     * Copy the remaining content of the input channel into the output channel, accounting the data
+     * to the given {@link IOScheduler} class. With a scheduler installed the data is moved in
+     * chunks, so the scheduler can throttle or preempt the copy between them.
+     */
+    public static CopyStatistics copy(final FileChannel in, final FileChannel out, final int ioClass)
+            throws IOException {
+        final long start = System.nanoTime();
+        final long size = in.size();
+        final boolean scheduled = IOScheduler.getScheduler() != null;
+        long position = in.position();
+        long transferred = 0;
+        while (position < size) {
+            long count = size - position;
+            if (scheduled) {
+                count = Math.min(count, SCHEDULED_CHUNK_SIZE);
+                IOScheduler.throttle(ioClass, count);
+            }
+            count = in.transferTo(position, count, out);
+            if (count <= 0) {
+                break;
+            }
+            position += count;
+            transferred += count;
+        }
+        in.position(position);
+
+        long buffered = 0;
+        final BufferPool pool = BufferPools.getPool();
+        final ByteBuffer buffer = pool.acquireDirect(BufferPools.DIRECT_BUFFER_SIZE);
+        try {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                IOScheduler.throttle(ioClass, buffer.remaining());
+                while (buffer.hasRemaining()) {
+                    buffered += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } finally {
+            pool.releaseDirect(buffer);
+        }
+        return new CopyStatistics(1, transferred + buffered, transferred, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * FileContentCache class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the content of frequently read files in memory. Entries are keyed by canonical path and
+ * are only served while the size, modification time and file key of the file are unchanged. The
+ * cache is bounded by the total bytes it holds and evicts the least recently used entries. The
+ * content can be held off-heap in direct buffers.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class FileContentCache {
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final Object key;
+        private final ByteBuffer content;
+
+        private Entry(final BasicFileAttributes attributes, final ByteBuffer content) {
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime().toMillis();
+            this.key = attributes.fileKey();
+            this.content = content;
+        }
+
+        private boolean matches(final BasicFileAttributes attributes) {
+            if ((this.size != attributes.size()) || (this.modified != attributes.lastModifiedTime().toMillis())) {
+                return false;
+            }
+            return (this.key == null) ? (attributes.fileKey() == null) : this.key.equals(attributes.fileKey());
+        }
+    }
+
+    private final long max_bytes;
+    private final boolean off_heap;
+    private final LinkedHashMap<String, Entry> entries;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes
+     *            maximum bytes of file content held by the cache
+     * @param offHeap
+     *            hold the content in direct buffers instead of the heap
+     */
+    public FileContentCache(final long maxBytes, final boolean offHeap) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("invalid cache size");
+        }
+        this.max_bytes = maxBytes;
+        this.off_heap = offHeap;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75F, true);
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    private synchronized Entry get(final String path, final BasicFileAttributes attributes) {
+        final Entry entry = this.entries.get(path);
+        if ((entry != null) && entry.matches(attributes)) {
+            this.hits++;
+            return entry;
+        }
+        if (entry != null) {
+            this.entries.remove(path);
+            this.bytes -= entry.size;
+        }
+        this.misses++;
+        return null;
+    }
+
+    /**
+     * Bytes of file content currently held
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    public synchronized double getHitRatio() {
+        final long requests = this.hits + this.misses;
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) this.hits / requests;
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized void invalidate(final File file) throws IOException {
+        final Entry entry = this.entries.remove(file.getCanonicalPath());
+        if (entry != null) {
+            this.bytes -= entry.size;
+        }
+    }
+
+    private synchronized void put(final String path, final Entry entry) {
+        if (entry.size > this.max_bytes) {
+            return;
+        }
+        final Entry previous = this.entries.put(path, entry);
+        if (previous != null) {
+            this.bytes -= previous.size;
+        }
+        this.bytes += entry.size;
+        final Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+        while ((this.bytes > this.max_bytes) && it.hasNext()) {
+            final Entry eldest = it.next().getValue();
+            it.remove();
+            this.bytes -= eldest.size;
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Returns a read-only view of the file content, reading the file only when the cached copy is
+     * missing or stale
+     */
+    public ByteBuffer read(final File file) throws IOException {
+        final String path = file.getCanonicalPath();
+        final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        final Entry entry = get(path, attributes);
+        if (entry != null) {
+            return entry.content.asReadOnlyBuffer();
+        }
+
+        final byte[] content = FileUtils.readFile(file);
+        ByteBuffer buffer;
+        if (this.off_heap) {
+            buffer = ByteBuffer.allocateDirect(content.length);
+            buffer.put(content);
+            buffer.flip();
+        } else {
+            buffer = ByteBuffer.wrap(content);
+        }
+        final BasicFileAttributes current = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        final Entry loaded = new Entry(attributes, buffer);
+        if (loaded.matches(current) && (content.length == attributes.size())) {
+            put(path, loaded);
+        }
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a copy of the file content, as {@link FileUtils#readFile(File)} does
+     */
+    public byte[] readFile(final File file) throws IOException {
+        final ByteBuffer buffer = read(file);
+        final byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        return content;
+    }
+}
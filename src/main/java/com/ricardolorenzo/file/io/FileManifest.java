@@ -0,0 +1,205 @@
+/*
+ * FileManifest class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ricardolorenzo.file.security.FileSummation;
+
+/**
+ * Remembers the MD5 summation of files together with their size, modification time and file key.
+ * As long as those attributes do not change the stored summation is reused, so unchanged files are
+ * not hashed again. The manifest can be kept in memory only or persisted into a sidecar file.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class FileManifest {
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String key;
+        private final String summation;
+
+        private Entry(final long size, final long modified, final String key, final String summation) {
+            this.size = size;
+            this.modified = modified;
+            this.key = key;
+            this.summation = summation;
+        }
+
+        private boolean matches(final BasicFileAttributes attributes) {
+            return (this.size == attributes.size()) && (this.modified == attributes.lastModifiedTime().toMillis())
+                    && this.key.equals(getKey(attributes));
+        }
+    }
+
+    private final File manifest_file;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Creates an in-memory manifest
+     */
+    public FileManifest() {
+        this.manifest_file = null;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Creates a manifest persisted into the given sidecar file, loading it if it exists
+     */
+    public FileManifest(final File manifestFile) throws IOException {
+        this.manifest_file = manifestFile;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        load();
+    }
+
+    private static String getKey(final BasicFileAttributes attributes) {
+        final Object key = attributes.fileKey();
+        if (key == null) {
+            return "";
+        }
+        return key.toString();
+    }
+
+    private static String getPath(final File file) throws IOException {
+        return file.getCanonicalPath();
+    }
+
+    /**
+     * Number of summations served from the manifest
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Number of summations that had to be computed
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the MD5 summation of the file, computing it only when the file changed since it was
+     * recorded
+     */
+    public String getSummation(final File file) throws NoSuchAlgorithmException, IOException {
+        final String path = getPath(file);
+        final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        final Entry entry = this.entries.get(path);
+        if ((entry != null) && entry.matches(attributes)) {
+            this.hits.incrementAndGet();
+            return entry.summation;
+        }
+        this.misses.incrementAndGet();
+        final String summation = FileSummation.getMD5Summation(file);
+        this.entries.put(path, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                getKey(attributes), summation));
+        return summation;
+    }
+
+    /**
+     * Check whether the file is recorded and did not change since then
+     */
+    public boolean isUnchanged(final File file) throws IOException {
+        final Entry entry = this.entries.get(getPath(file));
+        if ((entry == null) || !file.exists()) {
+            return false;
+        }
+        return entry.matches(Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+    }
+
+    private void load() throws IOException {
+        if ((this.manifest_file == null) || !this.manifest_file.exists()) {
+            return;
+        }
+        final Properties properties = new Properties();
+        final InputStream is = new FileInputStream(this.manifest_file);
+        try {
+            properties.load(is);
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+        }
+        for (final String path : properties.stringPropertyNames()) {
+            final String[] values = properties.getProperty(path).split("\\|", 4);
+            if (values.length == 4) {
+                try {
+                    this.entries.put(path, new Entry(Long.parseLong(values[0]), Long.parseLong(values[1]), values[3],
+                            values[2]));
+                } catch (final NumberFormatException e) {
+                    // nothing
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the summation of a file whose content is already known, for example right after
+     * copying it
+     */
+    public void record(final File file, final String summation) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        this.entries.put(getPath(file), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                getKey(attributes), summation));
+    }
+
+    public void remove(final File file) throws IOException {
+        this.entries.remove(getPath(file));
+    }
+
+    /**
+     * Write the manifest into its sidecar file
+     */
+    public void store() throws IOException {
+        if (this.manifest_file == null) {
+            throw new IOException("manifest file not defined");
+        }
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, Entry> e : this.entries.entrySet()) {
+            final Entry entry = e.getValue();
+            properties.setProperty(e.getKey(), entry.size + "|" + entry.modified + "|" + entry.summation + "|"
+                    + entry.key);
+        }
+        final File temporary = AtomicFileWriter.createTemporaryFile(this.manifest_file);
+        final OutputStream os = new FileOutputStream(temporary);
+        try {
+            properties.store(os, "file manifest");
+        } finally {
+            IOStreamUtils.closeQuietly(os);
+        }
+        AtomicFileWriter.move(temporary, this.manifest_file);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * FilePublisher class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the content of a file as a stream of chunks, reading only as many chunks as the
+ * subscriber requested. Every subscription reads the file from the start with one pooled direct
+ * buffer, which is reused for every chunk: the buffer passed to <code>onNext</code> is only valid
+ * until that call returns, so subscribers that keep the data must copy it.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class FilePublisher implements ChunkFlow.Publisher<ByteBuffer> {
+    private class FileSubscription implements ChunkFlow.Subscription, Runnable {
+        private final ChunkFlow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand;
+        private final AtomicInteger work;
+        private FileInputStream is;
+        private ByteBuffer buffer;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean done;
+
+        private FileSubscription(final ChunkFlow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+            this.demand = new AtomicLong();
+            this.work = new AtomicInteger();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            schedule();
+        }
+
+        private void finish() {
+            this.done = true;
+            IOStreamUtils.closeQuietly(this.is);
+            if (this.buffer != null) {
+                FilePublisher.this.pool.releaseDirect(this.buffer);
+                this.buffer = null;
+            }
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("non-positive subscription request");
+                schedule();
+                return;
+            }
+            for (;;) {
+                final long current = this.demand.get();
+                final long next = current + n;
+                if (this.demand.compareAndSet(current, (next < 0) ? Long.MAX_VALUE : next)) {
+                    break;
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * Emits the requested chunks. Only one thread runs this at a time.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!this.done) {
+                    drain();
+                }
+                missed = this.work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (this.error != null) {
+                finish();
+                this.subscriber.onError(this.error);
+                return;
+            }
+            try {
+                if (this.is == null) {
+                    this.is = new FileInputStream(FilePublisher.this.file);
+                    this.buffer = FilePublisher.this.pool.acquireDirect(FilePublisher.this.chunk_size);
+                }
+                while (!this.cancelled && (this.error == null) && (this.demand.get() > 0)) {
+                    this.buffer.clear();
+                    this.buffer.limit(FilePublisher.this.chunk_size);
+                    final int read = this.is.getChannel().read(this.buffer);
+                    if (read < 0) {
+                        finish();
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    this.buffer.flip();
+                    if (this.demand.get() != Long.MAX_VALUE) {
+                        this.demand.decrementAndGet();
+                    }
+                    try {
+                        this.subscriber.onNext(this.buffer);
+                    } catch (final Throwable e) {
+                        this.cancelled = true;
+                        finish();
+                        this.subscriber.onError(e);
+                        return;
+                    }
+                }
+                if (this.cancelled) {
+                    finish();
+                } else if (this.error != null) {
+                    finish();
+                    this.subscriber.onError(this.error);
+                }
+            } catch (final IOException e) {
+                finish();
+                this.subscriber.onError(e);
+            }
+        }
+
+        private void schedule() {
+            if (this.work.getAndIncrement() == 0) {
+                FilePublisher.this.executor.execute(this);
+            }
+        }
+    }
+
+    private final File file;
+    private final int chunk_size;
+    private final Executor executor;
+    private final BufferPool pool;
+
+    public FilePublisher(final File file) {
+        this(file, BufferPools.DIRECT_BUFFER_SIZE, AsyncFileUtils.getExecutor());
+    }
+
+    public FilePublisher(final File file, final int chunkSize, final Executor executor) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("invalid chunk size");
+        }
+        this.file = file;
+        this.chunk_size = chunkSize;
+        this.executor = executor;
+        this.pool = BufferPools.getPool();
+    }
+
+    @Override
+    public void subscribe(final ChunkFlow.Subscriber<? super ByteBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        subscriber.onSubscribe(new FileSubscription(subscriber));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * FileSubscriber class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes a stream of chunks into a file. It keeps at most <code>prefetch</code> chunks requested
+ * from the publisher, asking for a new one after each chunk is written. The future completes with
+ * the number of bytes written, or with the error that ended the stream.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class FileSubscriber implements ChunkFlow.Subscriber<ByteBuffer> {
+    private final File file;
+    private final int prefetch;
+    private final CompletableFuture<Long> future;
+    private ChunkFlow.Subscription subscription;
+    private FileOutputStream os;
+    private long bytes;
+
+    public FileSubscriber(final File file) {
+        this(file, 4);
+    }
+
+    public FileSubscriber(final File file, final int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("invalid prefetch");
+        }
+        this.file = file;
+        this.prefetch = prefetch;
+        this.future = new CompletableFuture<Long>();
+    }
+
+    /**
+     * Completes when the whole stream has been written
+     */
+    public CompletableFuture<Long> getFuture() {
+        return this.future;
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            this.os.close();
+            this.future.complete(this.bytes);
+        } catch (final IOException e) {
+            this.future.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        IOStreamUtils.closeQuietly(this.os);
+        this.future.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onNext(final ByteBuffer item) {
+        try {
+            final FileChannel channel = this.os.getChannel();
+            while (item.hasRemaining()) {
+                this.bytes += channel.write(item);
+            }
+            this.subscription.request(1);
+        } catch (final IOException e) {
+            this.subscription.cancel();
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onSubscribe(final ChunkFlow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        try {
+            this.os = new FileOutputStream(this.file);
+        } catch (final IOException e) {
+            subscription.cancel();
+            this.future.completeExceptionally(e);
+            return;
+        }
+        subscription.request(this.prefetch);
+    }
+}
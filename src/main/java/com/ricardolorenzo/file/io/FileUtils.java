@@ -16,7 +16,6 @@
  */
 package com.ricardolorenzo.file.io;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -27,7 +26,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
 
 import com.ricardolorenzo.file.lock.FileLock;
 import com.ricardolorenzo.file.lock.FileLockException;
@@ -39,6 +52,82 @@ import com.ricardolorenzo.file.security.FileSummation;
  * 
  */
 public class FileUtils {
+    public final static int DEFAULT_BATCH_CONCURRENCY = 16;
+
+    private interface BatchOperation<T> {
+        public T execute(File file) throws Exception;
+    }
+
+    /**
+     * Run the operation over every file on the {@link AsyncFileUtils} executor, with no more than
+     * <code>concurrency</code> files in flight at the same time. Files repeated in the collection are
+     * run once, as the results are keyed by file.
+     */
+    private static <T> BatchResult<T> batch(final Collection<File> files, final int concurrency,
+            final BatchOperation<T> operation) throws IOException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("invalid concurrency");
+        }
+        final Set<File> unique = new LinkedHashSet<File>(files);
+        final File[] batch = unique.toArray(new File[unique.size()]);
+        final Object[] results = new Object[batch.length];
+        final Exception[] errors = new Exception[batch.length];
+        final Semaphore permits = new Semaphore(concurrency);
+        final CountDownLatch done = new CountDownLatch(batch.length);
+        final ExecutorService executor = AsyncFileUtils.getExecutor();
+        try {
+            for (int i = 0; i < batch.length; i++) {
+                final int index = i;
+                permits.acquire();
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                results[index] = operation.execute(batch[index]);
+                            } catch (final Exception e) {
+                                errors[index] = e;
+                            } finally {
+                                permits.release();
+                                done.countDown();
+                            }
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    errors[index] = e;
+                    permits.release();
+                    done.countDown();
+                }
+            }
+            done.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the batch");
+        }
+
+        final Map<File, T> resultMap = new LinkedHashMap<File, T>();
+        final Map<File, Exception> errorMap = new LinkedHashMap<File, Exception>();
+        for (int i = 0; i < batch.length; i++) {
+            if (errors[i] != null) {
+                errorMap.put(batch[i], errors[i]);
+            } else {
+                @SuppressWarnings("unchecked")
+                final T result = (T) results[i];
+                resultMap.put(batch[i], result);
+            }
+        }
+        return new BatchResult<T>(resultMap, errorMap);
+    }
+
+    private static boolean hasRemaining(final ByteBuffer[] buffers) {
+        for (final ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Compress bytes into different formats
      * 
@@ -75,6 +164,48 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Compress bytes into different formats using the level and strategy of the policy
+     *
+     * @return the compression level used
+     * @throws NoSuchMethodException
+     *             , IOException
+     * */
+    public static int compress(final int type, final File input, final File output, final CompressionPolicy policy)
+            throws IOException, NoSuchMethodException {
+        final FileInputStream is = new FileInputStream(input);
+        final FileOutputStream os = new FileOutputStream(output);
+        try {
+            return IOStreamUtils.compress(type, is, os, policy);
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+            IOStreamUtils.closeQuietly(os);
+        }
+    }
+
+    /**
+     * Compress the file into a multi-member gzip file, storing its index next to the output so it
+     * can be read at any offset with {@link IndexedGZIPReader}
+     *
+     * @param span
+     *            uncompressed bytes stored in every gzip member
+     * @throws IOException
+     */
+    public static GZIPIndex compressIndexed(final File input, final File output, final int span)
+            throws IOException {
+        final FileInputStream is = new FileInputStream(input);
+        final IndexedGZIPOutputStream os = new IndexedGZIPOutputStream(new FileOutputStream(output), span);
+        try {
+            IOStreamUtils.write(is, os, IOScheduler.CLASS_BULK);
+            os.finish();
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+            IOStreamUtils.closeQuietly(os);
+        }
+        os.getIndex().store(GZIPIndex.getIndexFile(output));
+        return os.getIndex();
+    }
+
     /**
      * Copy the file content into another
      * 
@@ -82,29 +213,105 @@ public class FileUtils {
      *             , IOException
      * */
     public static final void copyFile(final File f1, final File f2) throws IOException, FileLockException {
+        copyFileWithStatistics(f1, f2);
+    }
+
+    /**
+     * Copy the file content into another, returning the amount of data copied
+     * 
+     * @throws FileLockException
+     *             , IOException
+     * */
+    public static final CopyStatistics copyFileWithStatistics(final File f1, final File f2) throws IOException,
+            FileLockException {
+        CopyStatistics statistics = new CopyStatistics(0, 0, 0, 0);
         if (f1.exists() && f1.isDirectory()) {
             if (!f2.exists()) {
                 f2.mkdirs();
             }
             for (final File f : f1.listFiles()) {
-                copyFile(f, new File(f2.getAbsolutePath() , f.getName()));
+                statistics = statistics.add(copyFileWithStatistics(f, new File(f2.getAbsolutePath(), f.getName())));
             }
         } else if (f1.exists() && f1.isFile()) {
-            final FileLock fl = new FileLock(f2);
-            try {
-                fl.lock();
-                final InputStream is = new BufferedInputStream(new FileInputStream(f1));
-                final OutputStream os = new BufferedOutputStream(new FileOutputStream(f2));
+            statistics = copyRegularFile(f1, f2);
+        }
+        return statistics;
+    }
 
-                try {
-                    IOStreamUtils.write(is, os);
-                } finally {
-                    IOStreamUtils.closeQuietly(is);
-                    IOStreamUtils.closeQuietly(os);
-                }
-            } finally {
-                fl.unlock();
-            }
+    /**
+     * Copy a regular file bypassing the page cache where the platform and the file system allow
+     * it, falling back to a normal copy otherwise
+     * */
+    public static final CopyStatistics copyFileDirect(final File f1, final File f2) throws IOException,
+            FileLockException {
+        final FileLock fl = new FileLock(f2);
+        try {
+            fl.lock();
+            return DirectIOCopier.copy(f1, f2);
+        } finally {
+            fl.unlock();
+        }
+    }
+
+    /**
+     * Copy a regular file reading and writing on separate threads, which keeps both devices busy
+     * when the files are on different devices
+     * */
+    public static final CopyStatistics copyFilePipelined(final File f1, final File f2) throws IOException,
+            FileLockException {
+        final FileLock fl = new FileLock(f2);
+        try {
+            fl.lock();
+            return new PipelinedCopier().copy(f1, f2);
+        } finally {
+            fl.unlock();
+        }
+    }
+
+    /**
+     * Copy a large file in chunks recorded in a checkpoint file, so an interrupted copy continues
+     * from the chunks already copied when it is run again
+     * */
+    public static final CopyStatistics copyFileResumable(final File f1, final File f2, final int parallelism)
+            throws IOException, FileLockException {
+        final FileLock fl = new FileLock(f2);
+        try {
+            fl.lock();
+            return new ResumableCopier(ResumableCopier.DEFAULT_CHUNK_SIZE, parallelism).copy(f1, f2);
+        } finally {
+            fl.unlock();
+        }
+    }
+
+    /**
+     * Copy a regular file skipping its zero blocks, so the destination stays sparse
+     * */
+    public static final CopyStatistics copyFileSparse(final File f1, final File f2) throws IOException,
+            FileLockException {
+        final FileLock fl = new FileLock(f2);
+        try {
+            fl.lock();
+            return new SparseFileCopier().copy(f1, f2);
+        } finally {
+            fl.unlock();
+        }
+    }
+
+    /**
+     * Copy a directory tree using several threads. Failed files are reported in the result and do
+     * not stop the copy.
+     * */
+    public static final TreeCopyResult copyTree(final File f1, final File f2, final int parallelism) {
+        return new TreeCopier(parallelism).copy(f1, f2);
+    }
+
+    static CopyStatistics copyRegularFile(final File f1, final File f2) throws IOException, FileLockException {
+        final FileLock fl = new FileLock(f2);
+        try {
+            fl.lock();
+            return FileChannelCopier.copy(f1, f2);
+        } finally {
+            fl.unlock();
         }
     }
 
@@ -137,7 +344,7 @@ public class FileUtils {
     private static void decompress(final int type, final InputStream is, final OutputStream os)
             throws NoSuchMethodException, IOException {
         try {
-            IOStreamUtils.compress(type, is, os);
+            IOStreamUtils.decompress(type, is, os);
         } finally {
             IOStreamUtils.closeQuietly(is);
             IOStreamUtils.closeQuietly(os);
@@ -160,20 +367,154 @@ public class FileUtils {
     public static byte[] readFile(final File file) throws IOException {
         FileInputStream is = null;
         final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final IOScheduler scheduler = IOScheduler.getScheduler();
+        if (scheduler != null) {
+            scheduler.enter(IOScheduler.CLASS_FOREGROUND);
+        }
         try {
             is = new FileInputStream(file);
-            IOStreamUtils.write(is, os);
+            IOStreamUtils.write(is, os, IOScheduler.CLASS_FOREGROUND);
         } finally {
+            if (scheduler != null) {
+                scheduler.exit(IOScheduler.CLASS_FOREGROUND);
+            }
             IOStreamUtils.closeQuietly(is);
             IOStreamUtils.closeQuietly(os);
         }
         return os.toByteArray();
     }
 
+    /**
+     * Read the file into the buffers in order with one vectored read, until every buffer is full
+     * or the end of the file is reached
+     * 
+     * @return the number of bytes read
+     * */
+    public static long readFile(final File file, final ByteBuffer... buffers) throws IOException {
+        final FileInputStream is = new FileInputStream(file);
+        try {
+            final FileChannel channel = is.getChannel();
+            long total = 0;
+            while (hasRemaining(buffers)) {
+                final long read = channel.read(buffers);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return total;
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Read the file through the content cache, which only reads it from disk when it changed
+     * since it was cached
+     * */
+    public static byte[] readFile(final File file, final FileContentCache cache) throws IOException {
+        return cache.readFile(file);
+    }
+
+    /**
+     * Map the whole file into memory as a read-only buffer, without copying it into the heap. Files
+     * larger than 2 GB must be read through a {@link MappedFileWindow}.
+     * */
+    public static ByteBuffer readFileMapped(final File file) throws IOException {
+        final FileInputStream is = new FileInputStream(file);
+        try {
+            final FileChannel channel = is.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("file too large to be mapped at once");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Read the file into the buffer until the buffer is full or the end of the file is reached
+     * 
+     * @return the number of bytes read
+     * */
+    public static int readFileInto(final File file, final ByteBuffer buffer) throws IOException {
+        final FileInputStream is = new FileInputStream(file);
+        try {
+            final FileChannel channel = is.getChannel();
+            int total = 0;
+            while (buffer.hasRemaining()) {
+                final int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return total;
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+        }
+    }
+
+    public static BatchResult<byte[]> readFiles(final Collection<File> files) throws IOException {
+        return readFiles(files, DEFAULT_BATCH_CONCURRENCY);
+    }
+
+    /**
+     * Read many files concurrently, so their I/O latency overlaps. The threads come from the
+     * {@link AsyncFileUtils} executor, which can be a virtual thread executor. A file repeated in the
+     * collection is read once and has a single entry in the result.
+     * */
+    public static BatchResult<byte[]> readFiles(final Collection<File> files, final int concurrency)
+            throws IOException {
+        return batch(files, concurrency, new BatchOperation<byte[]>() {
+            @Override
+            public byte[] execute(final File file) throws Exception {
+                return readFile(file);
+            }
+        });
+    }
+
     public static String readFileAsString(final File file) throws IOException {
         return new String(readFile(file));
     }
 
+    /**
+     * Read the file as text using the given charset instead of the platform default
+     * */
+    public static String readFileAsString(final File file, final Charset charset) throws IOException {
+        return new String(readFile(file), charset);
+    }
+
+    /**
+     * Lazily read the lines of a text file. The stream holds the file open, so it must be closed.
+     * */
+    public static Stream<String> readLines(final File file, final Charset charset) throws IOException {
+        return Files.lines(file.toPath(), charset);
+    }
+
+    /**
+     * Update every file of the destination tree that differs from the source tree, using the
+     * manifest to skip the files that did not change
+     * 
+     * @return the number of files copied
+     * */
+    public static int syncTree(final File f1, final File f2, final FileManifest manifest)
+            throws NoSuchAlgorithmException, IOException, FileLockException {
+        int updated = 0;
+        if (f1.isDirectory()) {
+            if (!f2.exists()) {
+                f2.mkdirs();
+            }
+            for (final File f : f1.listFiles()) {
+                updated += syncTree(f, new File(f2.getAbsolutePath(), f.getName()), manifest);
+            }
+        } else if (f1.isFile() && updateFile(f1, f2, manifest)) {
+            updated++;
+        }
+        return updated;
+    }
+
     public static boolean updateFile(final File f1, final File f2) throws FileNotFoundException,
             NoSuchAlgorithmException, IOException, FileLockException {
         if (f1.exists()) {
@@ -185,6 +526,50 @@ public class FileUtils {
         return false;
     }
 
+    /**
+     * Update the second file when its content differs from the first one. The summations are taken
+     * from the manifest, so files that did not change since they were last seen are not hashed.
+     * */
+    public static boolean updateFile(final File f1, final File f2, final FileManifest manifest)
+            throws NoSuchAlgorithmException, IOException, FileLockException {
+        if (!f1.isFile()) {
+            return false;
+        }
+        if (f2.exists() && (f1.length() == f2.length())
+                && manifest.getSummation(f1).equals(manifest.getSummation(f2))) {
+            return false;
+        }
+        final FileLock fl = new FileLock(f2);
+        try {
+            fl.lock();
+            FileChannelCopier.copy(f1, f2);
+            // hash what was written, the first file may have changed since it was compared
+            manifest.record(f2, FileSummation.getMD5Summation(f2));
+        } finally {
+            fl.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Update the second file rewriting only the blocks that differ from the first one
+     * 
+     * @return the data written and saved, or <code>null</code> if the first file does not exist
+     * */
+    public static DeltaStatistics updateFileDelta(final File f1, final File f2) throws NoSuchAlgorithmException,
+            IOException, FileLockException {
+        if (!f1.exists() || !f1.isFile()) {
+            return null;
+        }
+        final FileLock fl = new FileLock(f2);
+        try {
+            fl.lock();
+            return new DeltaUpdater().update(f1, f2);
+        } finally {
+            fl.unlock();
+        }
+    }
+
     public static boolean writeFile(final File file, final byte[] content) throws IOException, FileLockException {
         if (content == null) {
             return false;
@@ -210,10 +595,107 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Write the buffers in order with one vectored write, without joining them first
+     * */
+    public static boolean writeFile(final File file, final ByteBuffer... content) throws IOException,
+            FileLockException {
+        if (content == null) {
+            return false;
+        }
+
+        FileOutputStream os = null;
+        final FileLock fl = new FileLock(file);
+        try {
+            fl.lock();
+            try {
+                os = new FileOutputStream(file);
+                final FileChannel channel = os.getChannel();
+                while (hasRemaining(content)) {
+                    channel.write(content);
+                }
+                return true;
+            } catch (final IOException e) {
+                return false;
+            } finally {
+                IOStreamUtils.closeQuietly(os);
+            }
+        } finally {
+            fl.unlock();
+        }
+    }
+
     public static boolean writeFile(final File file, final String content) throws IOException, FileLockException {
         if (content == null) {
             return false;
         }
         return writeFile(file, content.getBytes());
     }
+
+    /**
+     * Write the content durably. The data goes into a sibling temporary file that is forced to disk
+     * and then atomically moved over the target, so a crash leaves either the old or the new
+     * content.
+     * */
+    public static boolean writeFileAtomic(final File file, final byte[] content) throws IOException,
+            FileLockException {
+        if (content == null) {
+            return false;
+        }
+
+        final FileLock fl = new FileLock(file);
+        try {
+            fl.lock();
+            try {
+                AtomicFileWriter.write(file, content);
+                return true;
+            } catch (final IOException e) {
+                return false;
+            }
+        } finally {
+            fl.unlock();
+        }
+    }
+
+    /**
+     * Write the content durably, sharing the disk flush with the other writers of the same group
+     * commit window
+     * */
+    public static boolean writeFileAtomic(final File file, final byte[] content, final GroupCommit commit)
+            throws IOException, FileLockException {
+        if (content == null) {
+            return false;
+        }
+
+        final FileLock fl = new FileLock(file);
+        try {
+            fl.lock();
+            try {
+                commit.commit(file, content);
+                return true;
+            } catch (final IOException e) {
+                return false;
+            }
+        } finally {
+            fl.unlock();
+        }
+    }
+
+    public static BatchResult<Boolean> writeFiles(final Map<File, byte[]> contents) throws IOException {
+        return writeFiles(contents, DEFAULT_BATCH_CONCURRENCY);
+    }
+
+    /**
+     * Write many files concurrently. Every file takes its own lock, as in
+     * {@link #writeFile(File, byte[])}.
+     * */
+    public static BatchResult<Boolean> writeFiles(final Map<File, byte[]> contents, final int concurrency)
+            throws IOException {
+        return batch(contents.keySet(), concurrency, new BatchOperation<Boolean>() {
+            @Override
+            public Boolean execute(final File file) throws Exception {
+                return writeFile(file, contents.get(file));
+            }
+        });
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ * GZIPIndex class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Index of the members of a multi-member gzip file, mapping the uncompressed offset where every
+ * member starts to its compressed offset. The last entry holds the total sizes of the file.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class GZIPIndex {
+    private static final int MAGIC = 0x475a4958;
+
+    private long[] uncompressed_offsets;
+    private long[] compressed_offsets;
+    private int size;
+
+    public GZIPIndex() {
+        this.uncompressed_offsets = new long[16];
+        this.compressed_offsets = new long[16];
+        this.size = 0;
+    }
+
+    public static File getIndexFile(final File file) {
+        return new File(file.getAbsolutePath() + ".gzi");
+    }
+
+    public static GZIPIndex load(final File file) throws IOException {
+        final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (is.readInt() != MAGIC) {
+                throw new IOException("invalid gzip index [" + file.getAbsolutePath() + "]");
+            }
+            final GZIPIndex index = new GZIPIndex();
+            for (int count = is.readInt(); count > 0; count--) {
+                index.add(is.readLong(), is.readLong());
+            }
+            return index;
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+        }
+    }
+
+    void add(final long uncompressedOffset, final long compressedOffset) {
+        if (this.size == this.uncompressed_offsets.length) {
+            this.uncompressed_offsets = Arrays.copyOf(this.uncompressed_offsets, this.size * 2);
+            this.compressed_offsets = Arrays.copyOf(this.compressed_offsets, this.size * 2);
+        }
+        this.uncompressed_offsets[this.size] = uncompressedOffset;
+        this.compressed_offsets[this.size] = compressedOffset;
+        this.size++;
+    }
+
+    public long getCompressedOffset(final int member) {
+        return this.compressed_offsets[member];
+    }
+
+    public long getCompressedSize() {
+        return this.size == 0 ? 0 : this.compressed_offsets[this.size - 1];
+    }
+
+    /**
+     * Returns the number of gzip members in the file
+     */
+    public int getMembers() {
+        return Math.max(this.size - 1, 0);
+    }
+
+    /**
+     * Returns the member holding the given uncompressed offset
+     */
+    public int getMember(final long offset) {
+        if ((offset < 0) || (offset >= getUncompressedSize())) {
+            throw new IndexOutOfBoundsException("offset " + offset);
+        }
+        final int position = Arrays.binarySearch(this.uncompressed_offsets, 0, this.size, offset);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    public long getUncompressedOffset(final int member) {
+        return this.uncompressed_offsets[member];
+    }
+
+    public long getUncompressedSize() {
+        return this.size == 0 ? 0 : this.uncompressed_offsets[this.size - 1];
+    }
+
+    public void store(final File file) throws IOException {
+        final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            os.writeInt(MAGIC);
+            os.writeInt(this.size);
+            for (int i = 0; i < this.size; i++) {
+                os.writeLong(this.uncompressed_offsets[i]);
+                os.writeLong(this.compressed_offsets[i]);
+            }
+            os.flush();
+        } finally {
+            IOStreamUtils.closeQuietly(os);
+        }
+    }
+}
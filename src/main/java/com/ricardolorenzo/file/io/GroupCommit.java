@@ -0,0 +1,270 @@
+/*
+ * GroupCommit class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batches the durable writes of many threads into one flush window. Every writer leaves its
+ * content in a temporary file and waits; a committer thread then forces all the pending files of a
+ * batch on a few threads of its own. That is still one fsync per file, but the fsyncs of a batch
+ * overlap instead of running one after another. Then the files are moved over their targets and
+ * each parent directory is synced once for the whole batch.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class GroupCommit implements Closeable {
+    private static class Pending {
+        private final File file;
+        private final File temporary;
+        private final FileOutputStream os;
+        private final CountDownLatch done;
+        private IOException exception;
+
+        private Pending(final File file, final File temporary, final FileOutputStream os) {
+            this.file = file;
+            this.temporary = temporary;
+            this.os = os;
+            this.done = new CountDownLatch(1);
+        }
+    }
+
+    private static final int MAX_FORCE_THREADS = 8;
+
+    private final long window;
+    private final int max_batch;
+    private final BlockingQueue<Pending> queue;
+    private final ExecutorService forcer;
+    private final Thread committer;
+    private volatile boolean closed;
+    private volatile long commits;
+    private volatile long batches;
+
+    /**
+     * @param window
+     *            time in milliseconds a batch waits for more writers before being committed
+     * @param maxBatch
+     *            maximum number of files committed in one batch
+     */
+    public GroupCommit(final long window, final int maxBatch) {
+        if ((window < 0) || (maxBatch < 1)) {
+            throw new IllegalArgumentException("invalid group commit parameters");
+        }
+        this.window = window;
+        this.max_batch = maxBatch;
+        this.queue = new LinkedBlockingQueue<Pending>();
+        // the force tasks never share threads with the writers, which block until their batch is done
+        this.forcer = Executors.newFixedThreadPool(Math.max(1, Math.min(maxBatch - 1, MAX_FORCE_THREADS)),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, "group-commit-force-" + this.count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Stop the committer thread once the pending writes are committed
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        try {
+            this.committer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the content atomically and wait until the batch containing it is on disk
+     */
+    public void commit(final File file, final byte[] content) throws IOException {
+        if (this.closed) {
+            throw new IOException("group commit closed");
+        }
+        final File temporary = AtomicFileWriter.createTemporaryFile(file);
+        final Pending pending;
+        try {
+            pending = new Pending(file, temporary, AtomicFileWriter.writeTemporaryFile(temporary, content));
+        } catch (final IOException e) {
+            temporary.delete();
+            throw e;
+        }
+        this.queue.add(pending);
+        if (this.closed && this.queue.remove(pending)) {
+            IOStreamUtils.closeQuietly(pending.os);
+            temporary.delete();
+            throw new IOException("group commit closed");
+        }
+        try {
+            pending.done.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for commit");
+        }
+        if (pending.exception != null) {
+            throw pending.exception;
+        }
+    }
+
+    private void commit(final List<Pending> batch) {
+        final CountDownLatch forced = new CountDownLatch(batch.size() - 1);
+        for (int i = 1; i < batch.size(); i++) {
+            final Pending pending = batch.get(i);
+            this.forcer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        force(pending);
+                    } finally {
+                        forced.countDown();
+                    }
+                }
+            });
+        }
+        force(batch.get(0));
+        boolean interrupted = false;
+        while (true) {
+            try {
+                forced.await();
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        final Set<File> directories = new LinkedHashSet<File>();
+        for (final Pending pending : batch) {
+            if (pending.exception == null) {
+                try {
+                    AtomicFileWriter.move(pending.temporary, pending.file);
+                    directories.add(pending.file.getAbsoluteFile().getParentFile());
+                } catch (final IOException e) {
+                    pending.exception = e;
+                }
+            }
+            if (pending.temporary.exists()) {
+                pending.temporary.delete();
+            }
+        }
+        for (final File directory : directories) {
+            AtomicFileWriter.syncDirectory(directory);
+        }
+
+        this.batches++;
+        this.commits += batch.size();
+        for (final Pending pending : batch) {
+            pending.done.countDown();
+        }
+    }
+
+    private static void force(final Pending pending) {
+        try {
+            pending.os.getChannel().force(true);
+        } catch (final IOException e) {
+            pending.exception = e;
+        } finally {
+            IOStreamUtils.closeQuietly(pending.os);
+        }
+    }
+
+    private void commitLoop() {
+        try {
+            commitPending();
+        } finally {
+            this.forcer.shutdown();
+        }
+    }
+
+    private void commitPending() {
+        final List<Pending> batch = new ArrayList<Pending>();
+        while (!this.closed || !this.queue.isEmpty()) {
+            try {
+                final Pending first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.window);
+                while (batch.size() < this.max_batch) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        this.queue.drainTo(batch, this.max_batch - batch.size());
+                        break;
+                    }
+                    final Pending next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (final InterruptedException e) {
+                // the pending batch is committed below
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Number of batches committed so far
+     */
+    public long getBatches() {
+        return this.batches;
+    }
+
+    /**
+     * Number of files committed so far
+     */
+    public long getCommits() {
+        return this.commits;
+    }
+}
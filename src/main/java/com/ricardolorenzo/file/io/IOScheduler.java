@@ -0,0 +1,234 @@
+/*
+ * IOScheduler class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the I/O of the copy, read and compression paths by operation class. Every class can
+ * have its own token bucket rate limit, and the data moved through each class is measured. Classes
+ * are also prioritised: while an operation of a higher priority class is running, lower priority
+ * operations wait between chunks, so a foreground read can preempt a bulk copy. A waiting operation
+ * resumes after at most the preemption timeout, so it is never starved.
+ * <p>
+ * No scheduler is installed by default; {@link #setScheduler(IOScheduler)} enables one for the
+ * whole library.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class IOScheduler {
+    public final static int CLASS_FOREGROUND = 0;
+    public final static int CLASS_NORMAL = 1;
+    public final static int CLASS_BULK = 2;
+
+    private static final int CLASSES = 3;
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+    private static volatile IOScheduler scheduler;
+
+    private static class Bucket {
+        private long rate;
+        private long capacity;
+        private double tokens;
+        private long refill_time;
+        private long total_bytes;
+        private long window_start;
+        private long window_bytes;
+        private double bandwidth;
+
+        private Bucket() {
+            this.refill_time = System.nanoTime();
+            this.window_start = this.refill_time;
+        }
+
+        /**
+         * Takes the tokens for the given bytes, and returns the nanoseconds the caller must wait
+         * to pay off the debt
+         */
+        private synchronized long take(final long bytes) {
+            final long now = System.nanoTime();
+            this.total_bytes += bytes;
+            this.window_bytes += bytes;
+            if (now - this.window_start >= WINDOW) {
+                this.bandwidth = (this.window_bytes * 1000000000D) / (now - this.window_start);
+                this.window_start = now;
+                this.window_bytes = 0;
+            }
+            if (this.rate <= 0) {
+                return 0;
+            }
+            this.tokens = Math.min(this.capacity, this.tokens
+                    + (((now - this.refill_time) / 1000000000D) * this.rate));
+            this.refill_time = now;
+            this.tokens -= bytes;
+            if (this.tokens >= 0) {
+                return 0;
+            }
+            return (long) ((-this.tokens * 1000000000D) / this.rate);
+        }
+
+        private synchronized double getBandwidth() {
+            final long elapsed = System.nanoTime() - this.window_start;
+            if ((elapsed >= WINDOW) || (this.total_bytes == this.window_bytes)) {
+                return (this.window_bytes * 1000000000D) / Math.max(elapsed, 1);
+            }
+            return this.bandwidth;
+        }
+    }
+
+    private final Bucket[] buckets;
+    private final int[] active;
+    private final long preemption_timeout;
+
+    public IOScheduler() {
+        this(100);
+    }
+
+    /**
+     * @param preemptionTimeout
+     *            maximum milliseconds an operation waits for higher priority operations to end
+     */
+    public IOScheduler(final long preemptionTimeout) {
+        this.buckets = new Bucket[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            this.buckets[i] = new Bucket();
+        }
+        this.active = new int[CLASSES];
+        this.preemption_timeout = TimeUnit.MILLISECONDS.toNanos(preemptionTimeout);
+    }
+
+    private static void checkClass(final int ioClass) {
+        if ((ioClass < 0) || (ioClass >= CLASSES)) {
+            throw new IllegalArgumentException("invalid I/O class");
+        }
+    }
+
+    public static IOScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Install the scheduler used by the library, or remove it with <code>null</code>
+     */
+    public static void setScheduler(final IOScheduler scheduler) {
+        IOScheduler.scheduler = scheduler;
+    }
+
+    /**
+     * Mark the start of an operation, which will preempt the lower priority classes until
+     * {@link #exit(int)} is called
+     */
+    public void enter(final int ioClass) {
+        checkClass(ioClass);
+        synchronized (this.active) {
+            this.active[ioClass]++;
+        }
+    }
+
+    public void exit(final int ioClass) {
+        checkClass(ioClass);
+        synchronized (this.active) {
+            if (this.active[ioClass] > 0) {
+                this.active[ioClass]--;
+            }
+            this.active.notifyAll();
+        }
+    }
+
+    /**
+     * Bytes per second moved by the class during the last measuring window
+     */
+    public double getBandwidth(final int ioClass) {
+        checkClass(ioClass);
+        return this.buckets[ioClass].getBandwidth();
+    }
+
+    public long getTotalBytes(final int ioClass) {
+        checkClass(ioClass);
+        synchronized (this.buckets[ioClass]) {
+            return this.buckets[ioClass].total_bytes;
+        }
+    }
+
+    private boolean isPreempted(final int ioClass) {
+        for (int i = 0; i < ioClass; i++) {
+            if (this.active[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set the rate limit of the class
+     * 
+     * @param rate
+     *            bytes per second, or 0 for no limit
+     * @param burst
+     *            bytes that can be moved at once after an idle period
+     */
+    public void setRate(final int ioClass, final long rate, final long burst) {
+        checkClass(ioClass);
+        final Bucket bucket = this.buckets[ioClass];
+        synchronized (bucket) {
+            bucket.rate = rate;
+            bucket.capacity = Math.max(burst, 1);
+            bucket.tokens = bucket.capacity;
+            bucket.refill_time = System.nanoTime();
+        }
+    }
+
+    /**
+     * Wait until the class may move the given bytes. Called before every chunk.
+     */
+    public void acquire(final int ioClass, final long bytes) throws InterruptedException {
+        checkClass(ioClass);
+        if (ioClass > 0) {
+            final long deadline = System.nanoTime() + this.preemption_timeout;
+            synchronized (this.active) {
+                while (isPreempted(ioClass)) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this.active, remaining);
+                }
+            }
+        }
+        final long wait = this.buckets[ioClass].take(bytes);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Acquire through the installed scheduler, if any
+     */
+    static void throttle(final int ioClass, final long bytes) throws InterruptedIOException {
+        final IOScheduler current = scheduler;
+        if (current != null) {
+            try {
+                current.acquire(ioClass, bytes);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for I/O bandwidth");
+            }
+        }
+    }
+}
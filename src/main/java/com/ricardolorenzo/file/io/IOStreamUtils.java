@@ -16,10 +16,10 @@
  */
 package com.ricardolorenzo.file.io;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
@@ -27,6 +27,7 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterOutputStream;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -39,6 +40,15 @@ public class IOStreamUtils {
     public final static int COMPRESSION_GZIP = 1;
     public final static int COMPRESSION_DEFLATE = 2;
     public final static int COMPRESSION_ZIP = 3;
+    /**
+     * Gzip compressed by blocks in parallel, readable by any gzip decoder
+     */
+    public final static int COMPRESSION_GZIP_PARALLEL = 4;
+    /**
+     * LZ4 frame format, much faster than deflate. The compression level and strategy do not apply.
+     */
+    public final static int COMPRESSION_LZ4 = 5;
+    private final static String ZIP_ENTRY_NAME = "data";
 
     public static final void closeQuietly(final InputStream is) {
         try {
@@ -64,6 +74,19 @@ public class IOStreamUtils {
         }
     }
 
+    private static void checkType(final int type) throws NoSuchMethodException {
+        switch (type) {
+            case COMPRESSION_GZIP:
+            case COMPRESSION_DEFLATE:
+            case COMPRESSION_ZIP:
+            case COMPRESSION_GZIP_PARALLEL:
+            case COMPRESSION_LZ4:
+                return;
+            default:
+                throw new NoSuchMethodException();
+        }
+    }
+
     /**
      * Compress stream into different formats
      * 
@@ -72,37 +95,103 @@ public class IOStreamUtils {
      * */
     public static void compress(final int type, final InputStream is, final OutputStream os) throws IOException,
             NoSuchMethodException {
+        compress(type, is, os, CompressionPolicy.DEFAULT);
+    }
+
+    /**
+     * Compress stream into different formats using the level and strategy of the policy
+     * 
+     * @return the compression level used
+     * @throws NoSuchMethodException
+     *             , IOException
+     * */
+    public static int compress(final int type, final InputStream is, final OutputStream os,
+            final CompressionPolicy policy) throws IOException, NoSuchMethodException {
+        final CompressionOutputStream compressed = getCompressionStream(type, os, policy);
+        try {
+            write(is, compressed, IOScheduler.CLASS_BULK);
+            compressed.close();
+        } catch (final IOException e) {
+            closeQuietly(compressed);
+            throw e;
+        } catch (final RuntimeException e) {
+            closeQuietly(compressed);
+            throw e;
+        }
+        return compressed.getLevel();
+    }
+
+    /**
+     * Returns a stream compressing everything written into it into the given output stream.
+     * Closing it finishes the compressed data and closes the output stream.
+     * 
+     * @throws NoSuchMethodException
+     *             , IOException
+     * */
+    public static OutputStream getCompressionStream(final int type, final OutputStream os) throws IOException,
+            NoSuchMethodException {
+        return getCompressionStream(type, os, CompressionPolicy.DEFAULT);
+    }
+
+    /**
+     * Returns a stream compressing everything written into it into the given output stream, using
+     * the level and strategy of the policy.
+     * 
+     * @throws NoSuchMethodException
+     *             , IOException
+     * */
+    public static CompressionOutputStream getCompressionStream(final int type, final OutputStream os,
+            final CompressionPolicy policy) throws IOException, NoSuchMethodException {
+        checkType(type);
+        return new CompressionOutputStream(type, os, policy);
+    }
+
+    static OutputStream createCompressionStream(final int type, final OutputStream os, final int level,
+            final int strategy) throws IOException, NoSuchMethodException {
         switch (type) {
-            case COMPRESSION_GZIP: {
-                GZIPOutputStream gzipped = new GZIPOutputStream(os);
-                try {
-                    write(is, gzipped);
-                    gzipped.flush();
-                } finally {
-                    closeQuietly(gzipped);
-                }
-            }
+            case COMPRESSION_GZIP:
+                return new GZIPOutputStream(os) {
+                    {
+                        this.def.setLevel(level);
+                        this.def.setStrategy(strategy);
+                    }
+                };
             case COMPRESSION_DEFLATE: {
-                ByteArrayOutputStream output = new ByteArrayOutputStream();
-                DeflaterOutputStream deflated = new DeflaterOutputStream(output, new Deflater(
-                        Deflater.DEFAULT_COMPRESSION, true));
-                try {
-                    write(is, deflated);
-                    deflated.flush();
-                } finally {
-                    closeQuietly(deflated);
-                }
+                final Deflater deflater = CodecPool.getPool().acquireDeflater(level, true);
+                deflater.setStrategy(strategy);
+                return new DeflaterOutputStream(os, deflater) {
+                    private boolean released;
+
+                    /**
+                     * The deflater goes back to the pool even if finishing fails, so a second
+                     * close must not touch it again
+                     */
+                    @Override
+                    public void close() throws IOException {
+                        if (this.released) {
+                            return;
+                        }
+                        try {
+                            finish();
+                        } finally {
+                            this.released = true;
+                            CodecPool.getPool().releaseDeflater(this.def);
+                            this.out.close();
+                        }
+                    }
+                };
             }
             case COMPRESSION_ZIP: {
-                ByteArrayOutputStream output = new ByteArrayOutputStream();
-                ZipOutputStream zipped = new ZipOutputStream(output);
-                try {
-                    write(is, zipped);
-                    zipped.flush();
-                } finally {
-                    closeQuietly(zipped);
-                }
+                final ZipOutputStream zipped = new ZipOutputStream(os);
+                zipped.setLevel(level);
+                zipped.putNextEntry(new ZipEntry(ZIP_ENTRY_NAME));
+                return zipped;
             }
+            case COMPRESSION_GZIP_PARALLEL:
+                return new ParallelGZIPOutputStream(os, level, strategy, ParallelGZIPOutputStream.DEFAULT_BLOCK_SIZE,
+                        ForkJoinPool.commonPool());
+            case COMPRESSION_LZ4:
+                return new LZ4FrameOutputStream(os);
             default:
                 throw new NoSuchMethodException();
         }
@@ -117,31 +206,47 @@ public class IOStreamUtils {
     public static void decompress(final int type, final InputStream is, final OutputStream os) throws IOException,
             NoSuchMethodException {
         switch (type) {
-            case COMPRESSION_GZIP: {
+            case COMPRESSION_GZIP:
+            case COMPRESSION_GZIP_PARALLEL: {
                 GZIPInputStream gzipped = new GZIPInputStream(is);
                 try {
-                    write(gzipped, os);
+                    write(gzipped, os, IOScheduler.CLASS_BULK);
                 } finally {
                     closeQuietly(gzipped);
                 }
+                break;
             }
             case COMPRESSION_DEFLATE: {
-                InflaterOutputStream inflated = new InflaterOutputStream(os, new Inflater(false));
+                final Inflater inflater = CodecPool.getPool().acquireInflater(true);
+                InflaterOutputStream inflated = new InflaterOutputStream(os, inflater);
                 try {
-                    write(is, inflated);
+                    write(is, inflated, IOScheduler.CLASS_BULK);
                     inflated.flush();
                 } finally {
                     closeQuietly(inflated);
+                    CodecPool.getPool().releaseInflater(inflater);
                 }
-
+                break;
             }
             case COMPRESSION_ZIP: {
                 ZipInputStream zipped = new ZipInputStream(is);
                 try {
-                    write(zipped, os);
+                    if (zipped.getNextEntry() != null) {
+                        write(zipped, os, IOScheduler.CLASS_BULK);
+                    }
                 } finally {
                     closeQuietly(zipped);
                 }
+                break;
+            }
+            case COMPRESSION_LZ4: {
+                LZ4FrameInputStream lz4 = new LZ4FrameInputStream(is);
+                try {
+                    write(lz4, os, IOScheduler.CLASS_BULK);
+                } finally {
+                    closeQuietly(lz4);
+                }
+                break;
             }
             default:
                 throw new NoSuchMethodException();
@@ -149,9 +254,23 @@ public class IOStreamUtils {
     }
 
     public static final void write(final InputStream is, final OutputStream os) throws IOException {
-        byte[] buffer = new byte[2048];
-        for (int lenght = is.read(buffer); lenght > 0; lenght = is.read(buffer)) {
-            os.write(buffer, 0, lenght);
+        write(is, os, IOScheduler.CLASS_NORMAL);
+    }
+
+    /**
+     * Copy the stream accounting every chunk to the given {@link IOScheduler} class
+     */
+    public static final void write(final InputStream is, final OutputStream os, final int ioClass)
+            throws IOException {
+        final BufferPool pool = BufferPools.getPool();
+        final byte[] buffer = pool.acquireArray(BufferPools.getBufferSize(is));
+        try {
+            for (int lenght = is.read(buffer); lenght > 0; lenght = is.read(buffer)) {
+                IOScheduler.throttle(ioClass, lenght);
+                os.write(buffer, 0, lenght);
+            }
+        } finally {
+            pool.releaseArray(buffer);
         }
     }
 
@@ -0,0 +1,172 @@
+/*
+ * IndexedGZIPOutputStream class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a multi-member gzip stream, starting a new member every given number of uncompressed
+ * bytes, and records where every member starts in a {@link GZIPIndex}. The output is still a valid
+ * gzip file, but every member can be decompressed on its own.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class IndexedGZIPOutputStream extends FilterOutputStream {
+    public final static int DEFAULT_SPAN = 1048576;
+
+    /**
+     * Counts the compressed bytes and keeps the underlying stream open when a member is closed
+     */
+    private static class MemberOutputStream extends FilterOutputStream {
+        private long count;
+
+        private MemberOutputStream(final OutputStream os) {
+            super(os);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+        }
+
+        @Override
+        public void write(final byte[] b, final int offset, final int length) throws IOException {
+            this.out.write(b, offset, length);
+            this.count += length;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+    }
+
+    private final MemberOutputStream output;
+    private final GZIPIndex index;
+    private final int span;
+    private GZIPOutputStream member;
+    private long member_length;
+    private long total_length;
+    private boolean finished;
+    private boolean closed;
+
+    public IndexedGZIPOutputStream(final OutputStream os) {
+        this(os, DEFAULT_SPAN);
+    }
+
+    /**
+     * @param span
+     *            uncompressed bytes stored in every gzip member
+     */
+    public IndexedGZIPOutputStream(final OutputStream os, final int span) {
+        super(os);
+        if (span <= 0) {
+            throw new IllegalArgumentException("invalid span");
+        }
+        this.output = new MemberOutputStream(os);
+        this.index = new GZIPIndex();
+        this.span = span;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            this.closed = true;
+            this.out.close();
+        }
+    }
+
+    private void closeMember() throws IOException {
+        if (this.member != null) {
+            this.member.close();
+            this.member = null;
+        }
+    }
+
+    /**
+     * Write the last member and complete the index, without closing the underlying stream
+     */
+    public void finish() throws IOException {
+        if (this.closed || this.finished) {
+            return;
+        }
+        if (this.total_length == 0) {
+            openMember();
+        }
+        closeMember();
+        this.index.add(this.total_length, this.output.count);
+        this.finished = true;
+        this.out.flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.member != null) {
+            this.member.flush();
+        }
+        this.out.flush();
+    }
+
+    /**
+     * Returns the index of the members written so far. It is complete once the stream is finished.
+     */
+    public GZIPIndex getIndex() {
+        return this.index;
+    }
+
+    private void openMember() throws IOException {
+        this.index.add(this.total_length, this.output.count);
+        this.member = new GZIPOutputStream(this.output, BufferPools.DEFAULT_BUFFER_SIZE);
+        this.member_length = 0;
+    }
+
+    @Override
+    public void write(final byte[] b, int offset, int length) throws IOException {
+        if (this.closed || this.finished) {
+            throw new IOException("stream closed");
+        }
+        while (length > 0) {
+            if (this.member == null) {
+                openMember();
+            }
+            final int count = (int) Math.min(length, this.span - this.member_length);
+            this.member.write(b, offset, count);
+            this.member_length += count;
+            this.total_length += count;
+            offset += count;
+            length -= count;
+            if (this.member_length == this.span) {
+                closeMember();
+            }
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+}
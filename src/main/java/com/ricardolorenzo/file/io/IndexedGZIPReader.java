@@ -0,0 +1,220 @@
+/*
+ * IndexedGZIPReader class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a gzip file written by {@link IndexedGZIPOutputStream} at any uncompressed offset, using
+ * its {@link GZIPIndex} to start decompressing at the member holding that offset. Ranges spanning
+ * several members can be decompressed in parallel.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class IndexedGZIPReader implements Closeable {
+    private final File file;
+    private final FileChannel channel;
+    private final GZIPIndex index;
+
+    /**
+     * Open the file with the index stored next to it
+     */
+    public IndexedGZIPReader(final File file) throws IOException {
+        this(file, GZIPIndex.load(GZIPIndex.getIndexFile(file)));
+    }
+
+    public IndexedGZIPReader(final File file, final GZIPIndex index) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.index = index;
+        if (this.channel.size() != index.getCompressedSize()) {
+            this.channel.close();
+            throw new IOException("index does not match file [" + file.getAbsolutePath() + "]");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    public GZIPIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns a stream with the uncompressed content starting at the given offset up to the end of
+     * the file
+     */
+    public InputStream open(final long offset) throws IOException {
+        final int member = this.index.getMember(offset);
+        final FileInputStream fis = new FileInputStream(this.file);
+        final InputStream is;
+        try {
+            fis.getChannel().position(this.index.getCompressedOffset(member));
+            is = new GZIPInputStream(fis, BufferPools.DEFAULT_BUFFER_SIZE);
+        } catch (final IOException e) {
+            IOStreamUtils.closeQuietly(fis);
+            throw e;
+        }
+        try {
+            skip(is, offset - this.index.getUncompressedOffset(member));
+        } catch (final IOException e) {
+            IOStreamUtils.closeQuietly(is);
+            throw e;
+        }
+        return is;
+    }
+
+    public byte[] read(final long offset, final int length) throws IOException {
+        return read(offset, length, 1);
+    }
+
+    /**
+     * Read the uncompressed range decompressing up to <code>parallelism</code> members at the same
+     * time on the {@link AsyncFileUtils} executor. The calling thread decompresses members too, and
+     * the helpers still queued when it runs out of members are cancelled instead of waited for.
+     */
+    public byte[] read(final long offset, final int length, final int parallelism) throws IOException {
+        if ((length < 0) || (offset + length > this.index.getUncompressedSize())) {
+            throw new IndexOutOfBoundsException("range " + offset + "+" + length);
+        }
+        final byte[] data = new byte[length];
+        if (length == 0) {
+            return data;
+        }
+        final int first = this.index.getMember(offset);
+        final int last = this.index.getMember(offset + length - 1);
+        final AtomicInteger next = new AtomicInteger(first);
+        final List<Future<?>> workers = new ArrayList<Future<?>>();
+        final List<AtomicBoolean> claims = new ArrayList<AtomicBoolean>();
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int member = next.getAndIncrement(); member <= last; member = next.getAndIncrement()) {
+                        readMember(member, offset, data);
+                    }
+                } catch (final IOException e) {
+                    next.set(last + 1);
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        for (int i = Math.min(parallelism, last - first + 1); i > 1; i--) {
+            final AtomicBoolean claim = new AtomicBoolean();
+            claims.add(claim);
+            workers.add(AsyncFileUtils.getExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (claim.compareAndSet(false, true)) {
+                        worker.run();
+                    }
+                }
+            }));
+        }
+        boolean completed = false;
+        try {
+            worker.run();
+            for (int i = 0; i < workers.size(); i++) {
+                // a helper claimed here never started, so there is nothing to wait for
+                if (claims.get(i).compareAndSet(false, true)) {
+                    workers.get(i).cancel(false);
+                } else {
+                    workers.get(i).get();
+                }
+            }
+            completed = true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while decompressing");
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw new IOException(cause.getCause() != null ? cause.getCause() : cause);
+        } catch (final IllegalStateException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            if (!completed) {
+                next.set(last + 1);
+                for (int i = 0; i < workers.size(); i++) {
+                    claims.get(i).set(true);
+                    workers.get(i).cancel(false);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Decompress the part of the member overlapping the range starting at <code>offset</code>
+     */
+    private void readMember(final int member, final long offset, final byte[] data) throws IOException {
+        final long memberOffset = this.index.getUncompressedOffset(member);
+        final long start = Math.max(offset, memberOffset);
+        final long end = Math.min(offset + data.length, this.index.getUncompressedOffset(member + 1));
+        final long position = this.index.getCompressedOffset(member);
+        final ByteBuffer compressed = ByteBuffer.allocate((int) (this.index.getCompressedOffset(member + 1) - position));
+        while (compressed.hasRemaining()) {
+            if (this.channel.read(compressed, position + compressed.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        final InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed.array()),
+                BufferPools.DEFAULT_BUFFER_SIZE);
+        try {
+            skip(is, start - memberOffset);
+            int done = (int) (start - offset);
+            final int limit = (int) (end - offset);
+            while (done < limit) {
+                final int count = is.read(data, done, limit - done);
+                if (count < 0) {
+                    throw new EOFException();
+                }
+                done += count;
+            }
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+        }
+    }
+
+    private static void skip(final InputStream is, long length) throws IOException {
+        while (length > 0) {
+            final long count = is.skip(length);
+            if (count <= 0) {
+                throw new EOFException();
+            }
+            length -= count;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * LZ4 class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * LZ4 block compression, compatible with the reference implementation. Blocks can be compressed
+ * between byte arrays or between heap or direct {@link ByteBuffer}s. Decompression checks every
+ * length and offset against the buffers, so malformed input never reads or writes outside them.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class LZ4 {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    /**
+     * Returns the largest size a block of the given length can take once compressed
+     */
+    public static int getMaxCompressedLength(final int length) {
+        return length + (length / 255) + 16;
+    }
+
+    public static int compress(final byte[] src, final int srcOffset, final int length, final byte[] dst,
+            final int dstOffset, final int dstLength) {
+        return compress(ByteBuffer.wrap(src), srcOffset, length, ByteBuffer.wrap(dst), dstOffset, dstLength);
+    }
+
+    /**
+     * Compress the remaining bytes of <code>src</code> into <code>dst</code>, advancing the
+     * position of both buffers
+     * 
+     * @throws BufferOverflowException
+     *             if the compressed block does not fit in <code>dst</code>
+     */
+    public static int compress(final ByteBuffer src, final ByteBuffer dst) {
+        final int length = compress(src, src.position(), src.remaining(), dst, dst.position(), dst.remaining());
+        src.position(src.limit());
+        dst.position(dst.position() + length);
+        return length;
+    }
+
+    /**
+     * Compress the bytes of <code>src</code> between the given offsets, writing them at the given
+     * offset of <code>dst</code> without changing the position of the buffers
+     * 
+     * @return the length of the compressed block
+     * @throws BufferOverflowException
+     *             if the compressed block does not fit in <code>dstLength</code> bytes
+     */
+    public static int compress(final ByteBuffer src, final int srcOffset, final int length, final ByteBuffer dst,
+            final int dstOffset, final int dstLength) {
+        return compress(src, srcOffset, length, dst, dstOffset, dstLength, createHashTable());
+    }
+
+    static int[] createHashTable() {
+        return new int[1 << HASH_LOG];
+    }
+
+    /**
+     * Compress using the given hash table, which can be reused between blocks without clearing it
+     */
+    static int compress(final ByteBuffer src, final int srcOffset, final int length, final ByteBuffer dst,
+            final int dstOffset, final int dstLength, final int[] table) {
+        final int srcEnd = srcOffset + length;
+        final int dstEnd = dstOffset + dstLength;
+        int anchor = srcOffset;
+        int op = dstOffset;
+
+        if (length >= MF_LIMIT + 1) {
+            final int matchStartLimit = srcEnd - MF_LIMIT;
+            final int matchEndLimit = srcEnd - LAST_LITERALS;
+            int ip = srcOffset + 1;
+            int attempts = 1 << SKIP_TRIGGER;
+            while (ip < matchStartLimit) {
+                final int sequence = src.getInt(ip);
+                final int h = hash(sequence);
+                int ref = table[h] - 1;
+                table[h] = ip + 1 - srcOffset;
+                ref += srcOffset;
+                if ((ref < srcOffset) || (ref >= ip) || (ip - ref > MAX_OFFSET) || (src.getInt(ref) != sequence)) {
+                    ip += attempts++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                attempts = 1 << SKIP_TRIGGER;
+
+                while ((ip > anchor) && (ref > srcOffset) && (src.get(ip - 1) == src.get(ref - 1))) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while ((ip + matchLength < matchEndLimit) && (src.get(ip + matchLength) == src.get(ref + matchLength))) {
+                    matchLength++;
+                }
+
+                final int literals = ip - anchor;
+                if (op + 1 + (literals / 255) + 1 + literals + 2 + (matchLength / 255) + 1 > dstEnd) {
+                    throw new BufferOverflowException();
+                }
+                final int token = op++;
+                op = writeLength(dst, op, literals);
+                copy(src, anchor, dst, op, literals);
+                op += literals;
+                dst.put(op++, (byte) (ip - ref));
+                dst.put(op++, (byte) ((ip - ref) >>> 8));
+                op = writeLength(dst, op, matchLength - MIN_MATCH);
+                dst.put(token, (byte) ((Math.min(literals, 15) << 4) | Math.min(matchLength - MIN_MATCH, 15)));
+
+                ip += matchLength;
+                anchor = ip;
+                if (ip < matchStartLimit) {
+                    table[hash(src.getInt(ip - 2))] = ip - 2 + 1 - srcOffset;
+                }
+            }
+        }
+
+        final int literals = srcEnd - anchor;
+        if (op + 1 + (literals / 255) + 1 + literals > dstEnd) {
+            throw new BufferOverflowException();
+        }
+        final int token = op++;
+        op = writeLength(dst, op, literals);
+        copy(src, anchor, dst, op, literals);
+        op += literals;
+        dst.put(token, (byte) (Math.min(literals, 15) << 4));
+        return op - dstOffset;
+    }
+
+    private static void copy(final ByteBuffer src, final int srcOffset, final ByteBuffer dst, final int dstOffset,
+            final int length) {
+        if (src.hasArray() && dst.hasArray()) {
+            System.arraycopy(src.array(), src.arrayOffset() + srcOffset, dst.array(), dst.arrayOffset() + dstOffset,
+                    length);
+        } else if (length > 32) {
+            final ByteBuffer source = src.duplicate();
+            source.limit(srcOffset + length);
+            source.position(srcOffset);
+            final ByteBuffer target = dst.duplicate();
+            target.position(dstOffset);
+            target.put(source);
+        } else {
+            for (int i = 0; i < length; i++) {
+                dst.put(dstOffset + i, src.get(srcOffset + i));
+            }
+        }
+    }
+
+    public static int decompress(final byte[] src, final int srcOffset, final int length, final byte[] dst,
+            final int dstOffset, final int dstLength) throws IOException {
+        return decompress(ByteBuffer.wrap(src), srcOffset, length, ByteBuffer.wrap(dst), dstOffset, dstLength);
+    }
+
+    /**
+     * Decompress the remaining bytes of <code>src</code>, a whole compressed block, into
+     * <code>dst</code>, advancing the position of both buffers
+     * 
+     * @throws IOException
+     *             if the block is malformed or does not fit in <code>dst</code>
+     */
+    public static int decompress(final ByteBuffer src, final ByteBuffer dst) throws IOException {
+        final int length = decompress(src, src.position(), src.remaining(), dst, dst.position(), dst.remaining());
+        src.position(src.limit());
+        dst.position(dst.position() + length);
+        return length;
+    }
+
+    /**
+     * Decompress a whole compressed block of <code>src</code> between the given offsets, writing it
+     * at the given offset of <code>dst</code> without changing the position of the buffers
+     * 
+     * @return the length of the decompressed data
+     * @throws IOException
+     *             if the block is malformed or does not fit in <code>dstLength</code> bytes
+     */
+    public static int decompress(final ByteBuffer src, final int srcOffset, final int length, final ByteBuffer dst,
+            final int dstOffset, final int dstLength) throws IOException {
+        return decompress(src, srcOffset, length, dst, dstOffset, dstOffset, dstLength);
+    }
+
+    /**
+     * Decompress a block whose matches may refer to the data already in <code>dst</code> from
+     * <code>dstStart</code>, as in the linked blocks of a frame
+     */
+    static int decompress(final ByteBuffer src, final int srcOffset, final int length, final ByteBuffer dst,
+            final int dstStart, final int dstOffset, final int dstLength) throws IOException {
+        final int srcEnd = srcOffset + length;
+        final int dstEnd = dstOffset + dstLength;
+        int ip = srcOffset;
+        int op = dstOffset;
+        while (true) {
+            if (ip >= srcEnd) {
+                throw new IOException("malformed LZ4 block");
+            }
+            final int token = src.get(ip++) & 0xff;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw new IOException("malformed LZ4 block");
+                    }
+                    b = src.get(ip++) & 0xff;
+                    literals += b;
+                } while (b == 255);
+            }
+            if ((literals < 0) || (literals > srcEnd - ip) || (literals > dstEnd - op)) {
+                throw new IOException("malformed LZ4 block");
+            }
+            copy(src, ip, dst, op, literals);
+            ip += literals;
+            op += literals;
+            if (ip == srcEnd) {
+                return op - dstOffset;
+            }
+
+            if (ip + 2 > srcEnd) {
+                throw new IOException("malformed LZ4 block");
+            }
+            final int offset = (src.get(ip) & 0xff) | ((src.get(ip + 1) & 0xff) << 8);
+            ip += 2;
+            if ((offset == 0) || (offset > op - dstStart)) {
+                throw new IOException("malformed LZ4 block");
+            }
+            int matchLength = token & 0x0f;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw new IOException("malformed LZ4 block");
+                    }
+                    b = src.get(ip++) & 0xff;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if ((matchLength < MIN_MATCH) || (matchLength > dstEnd - op)) {
+                throw new IOException("malformed LZ4 block");
+            }
+            if (offset >= matchLength) {
+                copy(dst, op - offset, dst, op, matchLength);
+            } else {
+                for (int i = 0; i < matchLength; i++) {
+                    dst.put(op + i, dst.get(op - offset + i));
+                }
+            }
+            op += matchLength;
+        }
+    }
+
+    private static int hash(final int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int writeLength(final ByteBuffer dst, int op, int length) {
+        if (length >= 15) {
+            length -= 15;
+            for (; length >= 255; length -= 255) {
+                dst.put(op++, (byte) 255);
+            }
+            dst.put(op++, (byte) length);
+        }
+        return op;
+    }
+}
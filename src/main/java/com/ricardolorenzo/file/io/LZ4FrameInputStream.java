@@ -0,0 +1,265 @@
+/*
+ * LZ4FrameInputStream class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the LZ4 frame format, as written by {@link LZ4FrameOutputStream} or the <code>lz4</code>
+ * tool. Independent and linked blocks are supported, checksums present in the frame are verified,
+ * and concatenated and skippable frames are read in sequence.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class LZ4FrameInputStream extends FilterInputStream {
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int SKIPPABLE_MASK = 0xFFFFFFF0;
+    private static final int WINDOW_SIZE = 65536;
+    private static final int FLAG_CONTENT_SIZE = 0x08;
+    private static final int FLAG_DICTIONARY = 0x01;
+
+    private final byte[] int_buffer;
+    private byte[] compressed;
+    private byte[] window;
+    private int window_start;
+    private int position;
+    private int limit;
+    private boolean linked;
+    private boolean block_checksum;
+    private XXHash32 content_checksum;
+    private boolean in_frame;
+    private boolean eof;
+
+    public LZ4FrameInputStream(final InputStream is) throws IOException {
+        super(is);
+        this.int_buffer = new byte[4];
+        if (!readFrameHeader(true)) {
+            throw new EOFException("empty LZ4 stream");
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return this.limit - this.position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (this.position == this.limit) {
+            if (this.eof || !readBlock()) {
+                return -1;
+            }
+        }
+        final int count = Math.min(length, this.limit - this.position);
+        System.arraycopy(this.window, this.position, b, offset, count);
+        this.position += count;
+        return count;
+    }
+
+    /**
+     * Read the next block into the window. Returns <code>false</code> at the end of the stream.
+     */
+    private boolean readBlock() throws IOException {
+        if (!this.in_frame && !readFrameHeader(false)) {
+            this.eof = true;
+            return false;
+        }
+        final int header = readInt();
+        if (header == 0) {
+            if (this.content_checksum != null) {
+                if (readInt() != (int) this.content_checksum.getValue()) {
+                    throw new IOException("LZ4 content checksum mismatch");
+                }
+            }
+            this.in_frame = false;
+            return true;
+        }
+        final boolean uncompressed = (header & LZ4FrameOutputStream.UNCOMPRESSED_BLOCK) != 0;
+        final int length = header & ~LZ4FrameOutputStream.UNCOMPRESSED_BLOCK;
+        if (length > this.compressed.length) {
+            throw new IOException("LZ4 block larger than the frame block size");
+        }
+        readFully(this.compressed, 0, length);
+        if (this.block_checksum && (readInt() != XXHash32.hash(this.compressed, 0, length, 0))) {
+            throw new IOException("LZ4 block checksum mismatch");
+        }
+
+        final int start;
+        if (this.linked && (this.limit > WINDOW_SIZE)) {
+            System.arraycopy(this.window, this.limit - WINDOW_SIZE, this.window, 0, WINDOW_SIZE);
+            start = WINDOW_SIZE;
+        } else if (this.linked) {
+            start = this.limit;
+        } else {
+            start = 0;
+        }
+        final int blockSize = this.window.length - this.window_start;
+        final int decompressed;
+        if (uncompressed) {
+            if (length > blockSize) {
+                throw new IOException("LZ4 block larger than the frame block size");
+            }
+            System.arraycopy(this.compressed, 0, this.window, start, length);
+            decompressed = length;
+        } else {
+            decompressed = LZ4.decompress(ByteBuffer.wrap(this.compressed), 0, length,
+                    ByteBuffer.wrap(this.window), 0, start, blockSize);
+        }
+        if (this.content_checksum != null) {
+            this.content_checksum.update(this.window, start, decompressed);
+        }
+        this.position = start;
+        this.limit = start + decompressed;
+        return true;
+    }
+
+    /**
+     * Read the header of the next frame, skipping skippable frames. Returns <code>false</code> at
+     * the end of the stream.
+     */
+    private boolean readFrameHeader(final boolean first) throws IOException {
+        int magic;
+        while (true) {
+            final int b = this.in.read();
+            if (b < 0) {
+                return false;
+            }
+            final byte[] rest = new byte[3];
+            readFully(rest, 0, 3);
+            magic = b | ((rest[0] & 0xff) << 8) | ((rest[1] & 0xff) << 16) | ((rest[2] & 0xff) << 24);
+            if ((magic & SKIPPABLE_MASK) != SKIPPABLE_MAGIC) {
+                break;
+            }
+            skipFully(readInt() & 0xffffffffL);
+        }
+        if (magic != LZ4FrameOutputStream.MAGIC) {
+            throw new IOException("not an LZ4 frame");
+        }
+
+        final byte[] descriptor = new byte[10];
+        readFully(descriptor, 0, 2);
+        final int flags = descriptor[0] & 0xff;
+        if ((flags & 0xc0) != LZ4FrameOutputStream.FLAG_VERSION) {
+            throw new IOException("unsupported LZ4 frame version");
+        }
+        if ((flags & FLAG_DICTIONARY) != 0) {
+            throw new IOException("LZ4 frames with a dictionary are not supported");
+        }
+        int descriptorLength = 2;
+        if ((flags & FLAG_CONTENT_SIZE) != 0) {
+            readFully(descriptor, 2, 8);
+            descriptorLength += 8;
+        }
+        if ((this.in.read() & 0xff) != ((XXHash32.hash(descriptor, 0, descriptorLength, 0) >>> 8) & 0xff)) {
+            throw new IOException("LZ4 frame header checksum mismatch");
+        }
+
+        final int blockSize;
+        switch ((descriptor[1] >>> 4) & 0x07) {
+            case 4:
+                blockSize = LZ4FrameOutputStream.BLOCK_SIZE_64KB;
+                break;
+            case 5:
+                blockSize = LZ4FrameOutputStream.BLOCK_SIZE_256KB;
+                break;
+            case 6:
+                blockSize = LZ4FrameOutputStream.BLOCK_SIZE_1MB;
+                break;
+            case 7:
+                blockSize = LZ4FrameOutputStream.BLOCK_SIZE_4MB;
+                break;
+            default:
+                throw new IOException("invalid LZ4 block size");
+        }
+        this.linked = (flags & LZ4FrameOutputStream.FLAG_BLOCK_INDEPENDENCE) == 0;
+        this.block_checksum = (flags & LZ4FrameOutputStream.FLAG_BLOCK_CHECKSUM) != 0;
+        this.content_checksum = (flags & LZ4FrameOutputStream.FLAG_CONTENT_CHECKSUM) != 0 ? new XXHash32() : null;
+        this.window_start = this.linked ? WINDOW_SIZE : 0;
+        if ((this.window == null) || (this.window.length != this.window_start + blockSize)) {
+            this.window = new byte[this.window_start + blockSize];
+            this.compressed = new byte[blockSize];
+        }
+        this.position = 0;
+        this.limit = 0;
+        this.in_frame = true;
+        return true;
+    }
+
+    private void readFully(final byte[] b, int offset, int length) throws IOException {
+        while (length > 0) {
+            final int count = this.in.read(b, offset, length);
+            if (count < 0) {
+                throw new EOFException("truncated LZ4 stream");
+            }
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private int readInt() throws IOException {
+        final byte[] b = this.int_buffer;
+        readFully(b, 0, 4);
+        return (b[0] & 0xff) | ((b[1] & 0xff) << 8) | ((b[2] & 0xff) << 16) | ((b[3] & 0xff) << 24);
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final byte[] buffer = new byte[(int) Math.min(n, BufferPools.DEFAULT_BUFFER_SIZE)];
+        long skipped = 0;
+        while (skipped < n) {
+            final int count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (count < 0) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    private void skipFully(long length) throws IOException {
+        while (length > 0) {
+            final long count = this.in.skip(length);
+            if (count <= 0) {
+                if (this.in.read() < 0) {
+                    throw new EOFException("truncated LZ4 stream");
+                }
+                length--;
+            } else {
+                length -= count;
+            }
+        }
+    }
+}
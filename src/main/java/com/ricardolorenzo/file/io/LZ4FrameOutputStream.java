@@ -0,0 +1,207 @@
+/*
+ * LZ4FrameOutputStream class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the LZ4 frame format, readable by the <code>lz4</code> tool and by
+ * {@link LZ4FrameInputStream}. Blocks are compressed independently, and are stored uncompressed
+ * when they do not shrink. Block and content checksums are optional.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class LZ4FrameOutputStream extends FilterOutputStream {
+    public final static int BLOCK_SIZE_64KB = 65536;
+    public final static int BLOCK_SIZE_256KB = 262144;
+    public final static int BLOCK_SIZE_1MB = 1048576;
+    public final static int BLOCK_SIZE_4MB = 4194304;
+
+    static final int MAGIC = 0x184D2204;
+    static final int FLAG_VERSION = 0x40;
+    static final int FLAG_BLOCK_INDEPENDENCE = 0x20;
+    static final int FLAG_BLOCK_CHECKSUM = 0x10;
+    static final int FLAG_CONTENT_CHECKSUM = 0x04;
+    static final int UNCOMPRESSED_BLOCK = 0x80000000;
+
+    private final byte[] block;
+    private final byte[] compressed;
+    private final ByteBuffer block_buffer;
+    private final ByteBuffer compressed_buffer;
+    private final int[] table;
+    private final byte[] int_buffer;
+    private final boolean block_checksum;
+    private final XXHash32 content_checksum;
+    private int block_length;
+    private boolean finished;
+    private boolean closed;
+
+    public LZ4FrameOutputStream(final OutputStream os) throws IOException {
+        this(os, BLOCK_SIZE_64KB, false, true);
+    }
+
+    /**
+     * @param blockSize
+     *            maximum block size, one of the <code>BLOCK_SIZE</code> constants
+     * @param blockChecksum
+     *            add the checksum of every block
+     * @param contentChecksum
+     *            add the checksum of the whole uncompressed content
+     */
+    public LZ4FrameOutputStream(final OutputStream os, final int blockSize, final boolean blockChecksum,
+            final boolean contentChecksum) throws IOException {
+        super(os);
+        final int blockCode = getBlockCode(blockSize);
+        this.block = new byte[blockSize];
+        this.compressed = new byte[LZ4.getMaxCompressedLength(blockSize)];
+        this.block_buffer = ByteBuffer.wrap(this.block);
+        this.compressed_buffer = ByteBuffer.wrap(this.compressed);
+        this.table = LZ4.createHashTable();
+        this.int_buffer = new byte[4];
+        this.block_checksum = blockChecksum;
+        this.content_checksum = contentChecksum ? new XXHash32() : null;
+        writeHeader(blockCode);
+    }
+
+    static int getBlockCode(final int blockSize) {
+        switch (blockSize) {
+            case BLOCK_SIZE_64KB:
+                return 4;
+            case BLOCK_SIZE_256KB:
+                return 5;
+            case BLOCK_SIZE_1MB:
+                return 6;
+            case BLOCK_SIZE_4MB:
+                return 7;
+            default:
+                throw new IllegalArgumentException("invalid LZ4 block size");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            this.closed = true;
+            this.out.close();
+        }
+    }
+
+    /**
+     * Write the pending block and the end of the frame, without closing the underlying stream
+     */
+    public void finish() throws IOException {
+        if (this.closed || this.finished) {
+            return;
+        }
+        writeBlock();
+        writeInt(0);
+        if (this.content_checksum != null) {
+            writeInt((int) this.content_checksum.getValue());
+        }
+        this.finished = true;
+        this.out.flush();
+    }
+
+    /**
+     * Write the pending data as a block, which may be shorter than the block size, and flush the
+     * underlying stream
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!this.closed && !this.finished) {
+            writeBlock();
+        }
+        this.out.flush();
+    }
+
+    @Override
+    public void write(final byte[] b, int offset, int length) throws IOException {
+        if (this.closed || this.finished) {
+            throw new IOException("stream closed");
+        }
+        if (this.content_checksum != null) {
+            this.content_checksum.update(b, offset, length);
+        }
+        while (length > 0) {
+            final int count = Math.min(length, this.block.length - this.block_length);
+            System.arraycopy(b, offset, this.block, this.block_length, count);
+            this.block_length += count;
+            offset += count;
+            length -= count;
+            if (this.block_length == this.block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    private void writeBlock() throws IOException {
+        if (this.block_length == 0) {
+            return;
+        }
+        final int length = LZ4.compress(this.block_buffer, 0, this.block_length, this.compressed_buffer, 0,
+                this.compressed.length, this.table);
+        final byte[] data;
+        final int dataLength;
+        if (length < this.block_length) {
+            data = this.compressed;
+            dataLength = length;
+            writeInt(length);
+        } else {
+            data = this.block;
+            dataLength = this.block_length;
+            writeInt(this.block_length | UNCOMPRESSED_BLOCK);
+        }
+        this.out.write(data, 0, dataLength);
+        if (this.block_checksum) {
+            writeInt(XXHash32.hash(data, 0, dataLength, 0));
+        }
+        this.block_length = 0;
+    }
+
+    private void writeHeader(final int blockCode) throws IOException {
+        final byte[] descriptor = new byte[2];
+        descriptor[0] = (byte) (FLAG_VERSION | FLAG_BLOCK_INDEPENDENCE
+                | (this.block_checksum ? FLAG_BLOCK_CHECKSUM : 0)
+                | (this.content_checksum != null ? FLAG_CONTENT_CHECKSUM : 0));
+        descriptor[1] = (byte) (blockCode << 4);
+        writeInt(MAGIC);
+        this.out.write(descriptor);
+        this.out.write((XXHash32.hash(descriptor, 0, descriptor.length, 0) >>> 8) & 0xff);
+    }
+
+    private void writeInt(final int value) throws IOException {
+        this.int_buffer[0] = (byte) value;
+        this.int_buffer[1] = (byte) (value >>> 8);
+        this.int_buffer[2] = (byte) (value >>> 16);
+        this.int_buffer[3] = (byte) (value >>> 24);
+        this.out.write(this.int_buffer);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * MappedFileWindow class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Maps a file into memory one window at a time, for files too large to be mapped at once. Every
+ * window is a read-only view over the file, nothing is copied into the heap.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class MappedFileWindow implements Closeable {
+    private final FileInputStream is;
+    private final FileChannel channel;
+    private final int window_size;
+    private final long size;
+    private long position;
+
+    public MappedFileWindow(final File file, final int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("invalid window size");
+        }
+        this.is = new FileInputStream(file);
+        this.channel = this.is.getChannel();
+        this.window_size = windowSize;
+        this.size = this.channel.size();
+        this.position = 0;
+    }
+
+    @Override
+    public void close() {
+        IOStreamUtils.closeQuietly(this.is);
+    }
+
+    public long getPosition() {
+        return this.position;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public boolean hasNext() {
+        return this.position < this.size;
+    }
+
+    /**
+     * Map the window starting at the given file position
+     */
+    public MappedByteBuffer map(final long position) throws IOException {
+        if ((position < 0) || (position > this.size)) {
+            throw new IOException("position out of file bounds");
+        }
+        final long length = Math.min(this.window_size, this.size - position);
+        return this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    /**
+     * Map the next window, or return <code>null</code> at the end of the file
+     */
+    public MappedByteBuffer next() throws IOException {
+        if (!hasNext()) {
+            return null;
+        }
+        final MappedByteBuffer buffer = map(this.position);
+        this.position += buffer.capacity();
+        return buffer;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * ParallelGZIPOutputStream class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a standard gzip stream compressing blocks of the input concurrently, as pigz does. Every
+ * block is deflated on its own using the last 32 KB of the previous block as dictionary, and ends
+ * with a sync flush so the compressed blocks can be concatenated into one deflate stream. The
+ * CRC-32 of every block is computed with the block and combined into the trailer CRC.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+    public final static int DEFAULT_BLOCK_SIZE = 131072;
+    private static final int DICTIONARY_SIZE = 32768;
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private static class Block {
+        private final byte[] data;
+        private final long crc;
+        private final int length;
+
+        private Block(final byte[] data, final long crc, final int length) {
+            this.data = data;
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+
+    private static class DeflateTask extends RecursiveTask<Block> {
+        private static final long serialVersionUID = 3158226473625101439L;
+        private final byte[] input;
+        private final int length;
+        private final byte[] dictionary;
+        private final int level;
+        private final int strategy;
+        private final boolean last;
+
+        private DeflateTask(final byte[] input, final int length, final byte[] dictionary, final int level,
+                final int strategy, final boolean last) {
+            this.input = input;
+            this.length = length;
+            this.dictionary = dictionary;
+            this.level = level;
+            this.strategy = strategy;
+            this.last = last;
+        }
+
+        @Override
+        protected Block compute() {
+            final CRC32 crc = new CRC32();
+            crc.update(this.input, 0, this.length);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(this.length / 2 + 64);
+            final BufferPool pool = BufferPools.getPool();
+            final byte[] buffer = pool.acquireArray(BufferPools.DEFAULT_BUFFER_SIZE);
+            final Deflater deflater = CodecPool.getPool().acquireDeflater(this.level, true);
+            try {
+                deflater.setStrategy(this.strategy);
+                if (this.dictionary != null) {
+                    deflater.setDictionary(this.dictionary);
+                }
+                deflater.setInput(this.input, 0, this.length);
+                if (this.last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        output.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                } else {
+                    int count;
+                    do {
+                        count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        output.write(buffer, 0, count);
+                    } while ((count == buffer.length) || !deflater.needsInput());
+                }
+            } finally {
+                CodecPool.getPool().releaseDeflater(deflater);
+                pool.releaseArray(buffer);
+            }
+            return new Block(output.toByteArray(), crc.getValue(), this.length);
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int block_size;
+    private final int level;
+    private final int strategy;
+    private final int max_pending;
+    private final Deque<ForkJoinTask<Block>> pending;
+    private byte[] block;
+    private int block_length;
+    private byte[] dictionary;
+    private long crc;
+    private long size;
+    private boolean closed;
+
+    public ParallelGZIPOutputStream(final OutputStream os) throws IOException {
+        this(os, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, DEFAULT_BLOCK_SIZE, ForkJoinPool
+                .commonPool());
+    }
+
+    public ParallelGZIPOutputStream(final OutputStream os, final int level, final int strategy,
+            final int blockSize, final ForkJoinPool pool) throws IOException {
+        super(os);
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("block size smaller than the deflate window");
+        }
+        this.pool = pool;
+        this.block_size = blockSize;
+        this.level = level;
+        this.strategy = strategy;
+        this.max_pending = pool.getParallelism() * 2;
+        this.pending = new ArrayDeque<ForkJoinTask<Block>>();
+        this.block = new byte[blockSize];
+        this.crc = 0;
+        this.size = 0;
+        this.out.write(HEADER);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            this.closed = true;
+            this.out.close();
+        }
+    }
+
+    /**
+     * Write the remaining compressed data and the gzip trailer, without closing the underlying
+     * stream
+     */
+    public void finish() throws IOException {
+        if (this.closed || (this.block == null)) {
+            return;
+        }
+        submit(true);
+        while (!this.pending.isEmpty()) {
+            writeBlock();
+        }
+        writeInt(this.crc);
+        writeInt(this.size);
+        this.out.flush();
+    }
+
+    private void submit(final boolean last) throws IOException {
+        final DeflateTask task = new DeflateTask(this.block, this.block_length, this.dictionary, this.level,
+                this.strategy, last);
+        if (this.block_length >= DICTIONARY_SIZE) {
+            this.dictionary = new byte[DICTIONARY_SIZE];
+            System.arraycopy(this.block, this.block_length - DICTIONARY_SIZE, this.dictionary, 0, DICTIONARY_SIZE);
+        }
+        this.pending.add(this.pool.submit(task));
+        this.block = last ? null : new byte[this.block_size];
+        this.block_length = 0;
+        while (this.pending.size() > this.max_pending) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, int offset, int length) throws IOException {
+        if (this.closed || (this.block == null)) {
+            throw new IOException("stream closed");
+        }
+        while (length > 0) {
+            final int count = Math.min(length, this.block_size - this.block_length);
+            System.arraycopy(b, offset, this.block, this.block_length, count);
+            this.block_length += count;
+            offset += count;
+            length -= count;
+            if (this.block_length == this.block_size) {
+                submit(false);
+            }
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    private void writeBlock() throws IOException {
+        final Block block;
+        try {
+            block = this.pending.poll().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while compressing");
+        } catch (final ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        this.out.write(block.data);
+        this.crc = CRC32Combine.combine(this.crc, block.crc, block.length);
+        this.size += block.length;
+    }
+
+    private void writeInt(final long value) throws IOException {
+        this.out.write((int) (value & 0xff));
+        this.out.write((int) ((value >> 8) & 0xff));
+        this.out.write((int) ((value >> 16) & 0xff));
+        this.out.write((int) ((value >> 24) & 0xff));
+    }
+}
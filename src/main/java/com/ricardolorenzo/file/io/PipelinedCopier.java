@@ -0,0 +1,196 @@
+/*
+ * PipelinedCopier class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Copies a file with a reader thread and a writer thread, so the source and the destination
+ * devices are busy at the same time. The reader fills pooled direct buffers and hands them to the
+ * writer through a bounded queue; the writer returns each buffer once it has been written. This
+ * helps when source and destination are on different devices.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class PipelinedCopier {
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final int buffer_size;
+    private final int depth;
+    private volatile BlockingQueue<ByteBuffer> filled;
+    private volatile int max_queue_depth;
+
+    public PipelinedCopier() {
+        this(BufferPools.DIRECT_BUFFER_SIZE * 4, 4);
+    }
+
+    /**
+     * @param bufferSize
+     *            size of every buffer handed from the reader to the writer
+     * @param depth
+     *            number of buffers the reader can fill ahead of the one being written
+     */
+    public PipelinedCopier(final int bufferSize, final int depth) {
+        if ((bufferSize <= 0) || (depth < 1)) {
+            throw new IllegalArgumentException("invalid buffer size or depth");
+        }
+        this.buffer_size = bufferSize;
+        this.depth = depth;
+    }
+
+    public CopyStatistics copy(final File source, final File destination) throws IOException {
+        final long start = System.nanoTime();
+        final BufferPool pool = BufferPools.getPool();
+        final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<ByteBuffer>(this.depth + 2);
+        final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<ByteBuffer>(this.depth + 1);
+        for (int i = 0; i <= this.depth; i++) {
+            free.add(pool.acquireDirect(this.buffer_size));
+        }
+        this.filled = filled;
+        this.max_queue_depth = 0;
+
+        final FileInputStream is = new FileInputStream(source);
+        FileOutputStream os = null;
+        final IOException[] failure = new IOException[1];
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final FileChannel in = is.getChannel();
+                ByteBuffer buffer = null;
+                try {
+                    for (;;) {
+                        buffer = free.take();
+                        buffer.clear();
+                        buffer.limit(PipelinedCopier.this.buffer_size);
+                        int read = 0;
+                        while (buffer.hasRemaining()) {
+                            read = in.read(buffer);
+                            if (read < 0) {
+                                break;
+                            }
+                        }
+                        buffer.flip();
+                        if (buffer.hasRemaining()) {
+                            IOScheduler.throttle(IOScheduler.CLASS_BULK, buffer.remaining());
+                            filled.put(buffer);
+                        } else {
+                            free.put(buffer);
+                        }
+                        buffer = null;
+                        if (read < 0) {
+                            break;
+                        }
+                    }
+                } catch (final IOException e) {
+                    failure[0] = e;
+                } catch (final InterruptedException e) {
+                    failure[0] = new IOException("interrupted while reading");
+                } finally {
+                    if (buffer != null) {
+                        free.offer(buffer);
+                    }
+                    try {
+                        filled.put(END);
+                    } catch (final InterruptedException e) {
+                        // the writer has already given up
+                    }
+                }
+            }
+        }, "pipelined-copy-reader");
+
+        long bytes = 0;
+        ByteBuffer buffer = null;
+        try {
+            os = new FileOutputStream(destination);
+            final FileChannel out = os.getChannel();
+            reader.start();
+            for (;;) {
+                final int queued = filled.size();
+                if (queued > this.max_queue_depth) {
+                    this.max_queue_depth = queued;
+                }
+                buffer = filled.take();
+                if (buffer == END) {
+                    buffer = null;
+                    break;
+                }
+                while (buffer.hasRemaining()) {
+                    bytes += out.write(buffer);
+                }
+                free.put(buffer);
+                buffer = null;
+            }
+            reader.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing");
+        } finally {
+            if (reader.isAlive()) {
+                reader.interrupt();
+                try {
+                    reader.join();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            IOStreamUtils.closeQuietly(is);
+            IOStreamUtils.closeQuietly(os);
+            if (buffer != null) {
+                pool.releaseDirect(buffer);
+            }
+            for (buffer = free.poll(); buffer != null; buffer = free.poll()) {
+                pool.releaseDirect(buffer);
+            }
+            for (buffer = filled.poll(); buffer != null; buffer = filled.poll()) {
+                if (buffer != END) {
+                    pool.releaseDirect(buffer);
+                }
+            }
+            this.filled = null;
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return new CopyStatistics(1, bytes, 0, System.nanoTime() - start);
+    }
+
+    /**
+     * Largest number of filled buffers seen waiting for the writer during the last copy
+     */
+    public int getMaxQueueDepth() {
+        return this.max_queue_depth;
+    }
+
+    /**
+     * Number of filled buffers currently waiting for the writer
+     */
+    public int getQueueDepth() {
+        final BlockingQueue<ByteBuffer> queue = this.filled;
+        if (queue == null) {
+            return 0;
+        }
+        return queue.size();
+    }
+}
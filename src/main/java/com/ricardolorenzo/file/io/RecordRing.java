@@ -0,0 +1,96 @@
+/*
+ * RecordRing class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring of records with many producers and a single consumer. Every slot carries
+ * a sequence number telling whether it is free for the producer of a given turn or holds a record
+ * ready for the consumer.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+class RecordRing {
+    private final byte[][] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail;
+    private long head;
+
+    RecordRing(final int capacity) {
+        if ((capacity < 2) || (Integer.bitCount(capacity) != 1)) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.slots = new byte[capacity][];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            this.sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.tail = new AtomicLong();
+        this.head = 0;
+    }
+
+    /**
+     * Number of records claimed by producers so far
+     */
+    long getClaimed() {
+        return this.tail.get();
+    }
+
+    /**
+     * Number of records taken by the consumer so far
+     */
+    long getConsumed() {
+        return this.head;
+    }
+
+    boolean offer(final byte[] record) {
+        for (;;) {
+            final long position = this.tail.get();
+            final int index = (int) (position & this.mask);
+            final long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.slots[index] = record;
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Take the next record. Only one thread may consume.
+     */
+    byte[] poll() {
+        final int index = (int) (this.head & this.mask);
+        if (this.sequences.get(index) != this.head + 1) {
+            return null;
+        }
+        final byte[] record = this.slots[index];
+        this.slots[index] = null;
+        this.sequences.set(index, this.head + this.slots.length);
+        this.head++;
+        return record;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * ResumableCopier class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Copies large files in fixed size chunks that can be resumed after an interruption. Every
+ * completed chunk is appended, with its CRC-32, to a checkpoint file next to the destination. When
+ * a copy is restarted, the recorded chunks are verified against the destination data and only the
+ * missing or corrupt chunks are copied again. Chunks can be copied in parallel at different
+ * offsets. The checkpoint is removed once the copy is complete.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class ResumableCopier {
+    public final static int DEFAULT_CHUNK_SIZE = 4194304;
+
+    private final int chunk_size;
+    private final int parallelism;
+
+    public ResumableCopier() {
+        this(DEFAULT_CHUNK_SIZE, 1);
+    }
+
+    public ResumableCopier(final int chunkSize, final int parallelism) {
+        if ((chunkSize <= 0) || (parallelism < 1)) {
+            throw new IllegalArgumentException("invalid chunk size or parallelism");
+        }
+        this.chunk_size = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    public static File getCheckpointFile(final File destination) {
+        return new File(destination.getAbsolutePath() + ".checkpoint");
+    }
+
+    private static long checksum(final ByteBuffer buffer) {
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return crc.getValue();
+    }
+
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Copy the source into the destination, resuming a previous interrupted copy if its checkpoint
+     * matches the source
+     * 
+     * @return the statistics of the chunks copied by this call
+     */
+    public CopyStatistics copy(final File source, final File destination) throws IOException {
+        final long start = System.nanoTime();
+        final File checkpoint = getCheckpointFile(destination);
+        final String header = source.length() + " " + source.lastModified() + " " + this.chunk_size;
+        final long size = source.length();
+        final int chunks = (int) ((size + this.chunk_size - 1) / this.chunk_size);
+
+        final FileInputStream is = new FileInputStream(source);
+        final RandomAccessFile raf = new RandomAccessFile(destination, "rw");
+        FileOutputStream log = null;
+        try {
+            final FileChannel in = is.getChannel();
+            final FileChannel out = raf.getChannel();
+            final boolean[] done = new boolean[chunks];
+            final Map<Integer, Long> recorded = readCheckpoint(checkpoint, header);
+            if (recorded == null) {
+                out.truncate(0);
+            }
+            raf.setLength(size);
+            if (recorded != null) {
+                verify(out, recorded, done, size);
+            }
+
+            log = new FileOutputStream(checkpoint, recorded != null);
+            if (recorded == null) {
+                log.write((header + "\n").getBytes());
+            }
+            final List<Integer> pending = new ArrayList<Integer>();
+            for (int i = 0; i < chunks; i++) {
+                if (!done[i]) {
+                    pending.add(i);
+                }
+            }
+            final long copied = copyChunks(in, out, pending, log, size);
+            out.force(true);
+            IOStreamUtils.closeQuietly(log);
+            log = null;
+            checkpoint.delete();
+            return new CopyStatistics(1, copied, 0, System.nanoTime() - start);
+        } finally {
+            IOStreamUtils.closeQuietly(log);
+            IOStreamUtils.closeQuietly(is);
+            raf.close();
+        }
+    }
+
+    private long copyChunk(final FileChannel in, final FileChannel out, final int chunk, final FileOutputStream log,
+            final long size) throws IOException {
+        final long position = (long) chunk * this.chunk_size;
+        final int length = (int) Math.min(this.chunk_size, size - position);
+        final BufferPool pool = BufferPools.getPool();
+        final ByteBuffer buffer = pool.acquireDirect(length);
+        try {
+            buffer.limit(length);
+            read(in, buffer, position);
+            final long crc = checksum(buffer);
+            IOScheduler.throttle(IOScheduler.CLASS_BULK, buffer.remaining());
+            while (buffer.hasRemaining()) {
+                out.write(buffer, position + buffer.position());
+            }
+            synchronized (log) {
+                log.write((chunk + " " + crc + "\n").getBytes());
+            }
+            return length;
+        } finally {
+            pool.releaseDirect(buffer);
+        }
+    }
+
+    private long copyChunks(final FileChannel in, final FileChannel out, final List<Integer> chunks,
+            final FileOutputStream log, final long size) throws IOException {
+        long copied = 0;
+        if (this.parallelism == 1) {
+            for (final Integer chunk : chunks) {
+                copied += copyChunk(in, out, chunk, log, size);
+            }
+            return copied;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+        try {
+            final List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (final Integer chunk : chunks) {
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return copyChunk(in, out, chunk, log, size);
+                    }
+                }));
+            }
+            for (final Future<Long> result : results) {
+                copied += result.get();
+            }
+            return copied;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while copying chunks");
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the recorded chunks, or return <code>null</code> if there is no checkpoint for this
+     * source and chunk size
+     */
+    private Map<Integer, Long> readCheckpoint(final File checkpoint, final String header) throws IOException {
+        if (!checkpoint.exists()) {
+            return null;
+        }
+        final BufferedReader reader = new BufferedReader(new FileReader(checkpoint));
+        try {
+            if (!header.equals(reader.readLine())) {
+                return null;
+            }
+            final Map<Integer, Long> recorded = new HashMap<Integer, Long>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                final String[] values = line.split(" ");
+                if (values.length == 2) {
+                    try {
+                        recorded.put(Integer.parseInt(values[0]), Long.parseLong(values[1]));
+                    } catch (final NumberFormatException e) {
+                        // incomplete line
+                    }
+                }
+            }
+            return recorded;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void verify(final FileChannel out, final Map<Integer, Long> recorded, final boolean[] done,
+            final long size) throws IOException {
+        final BufferPool pool = BufferPools.getPool();
+        final ByteBuffer buffer = pool.acquireDirect(this.chunk_size);
+        try {
+            for (final Map.Entry<Integer, Long> entry : recorded.entrySet()) {
+                final int chunk = entry.getKey();
+                if ((chunk < 0) || (chunk >= done.length)) {
+                    continue;
+                }
+                final long position = (long) chunk * this.chunk_size;
+                buffer.clear();
+                buffer.limit((int) Math.min(this.chunk_size, size - position));
+                read(out, buffer, position);
+                done[chunk] = checksum(buffer) == entry.getValue();
+            }
+        } finally {
+            pool.releaseDirect(buffer);
+        }
+    }
+}
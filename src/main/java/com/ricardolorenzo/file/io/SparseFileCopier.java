@@ -0,0 +1,141 @@
+/*
+ * SparseFileCopier class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies files keeping their holes. The source is scanned block by block and the blocks made only
+ * of zeros are skipped in the destination instead of written, so the file system leaves them
+ * unallocated. Java has no access to <code>SEEK_DATA</code> and <code>SEEK_HOLE</code>, so holes
+ * are detected by their content; zero filled blocks that were allocated in the source become holes
+ * in the destination.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class SparseFileCopier {
+    public final static int DEFAULT_BLOCK_SIZE = 4096;
+    private static final int CHUNK_SIZE = 1048576;
+
+    private final int block_size;
+
+    public SparseFileCopier() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize
+     *            size of the zero runs that become holes, normally the file system block size
+     */
+    public SparseFileCopier(final int blockSize) {
+        if ((blockSize <= 0) || ((CHUNK_SIZE % blockSize) != 0)) {
+            throw new IllegalArgumentException("invalid block size");
+        }
+        this.block_size = blockSize;
+    }
+
+    private static boolean isZero(final ByteBuffer buffer, final int from, final int to) {
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the source into the destination leaving holes for the zero blocks
+     * 
+     * @return the statistics of the copy, where the bytes are the data actually written
+     */
+    public CopyStatistics copy(final File source, final File destination) throws IOException {
+        final long start = System.nanoTime();
+        final BufferPool pool = BufferPools.getPool();
+        final FileInputStream is = new FileInputStream(source);
+        final ByteBuffer buffer = pool.acquireDirect(CHUNK_SIZE);
+        RandomAccessFile raf = null;
+        long size = 0;
+        long written = 0;
+        try {
+            raf = new RandomAccessFile(destination, "rw");
+            raf.setLength(0);
+            final FileChannel in = is.getChannel();
+            final FileChannel out = raf.getChannel();
+            for (;;) {
+                buffer.clear();
+                buffer.limit(CHUNK_SIZE);
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                final int length = buffer.position();
+                if (length == 0) {
+                    break;
+                }
+                IOScheduler.throttle(IOScheduler.CLASS_BULK, length);
+
+                int data = -1;
+                for (int offset = 0; offset < length; offset += this.block_size) {
+                    final int end = Math.min(offset + this.block_size, length);
+                    final boolean zero = isZero(buffer, offset, end);
+                    if (!zero && (data < 0)) {
+                        data = offset;
+                    } else if (zero && (data >= 0)) {
+                        written += write(out, buffer, data, offset, size);
+                        data = -1;
+                    }
+                }
+                if (data >= 0) {
+                    written += write(out, buffer, data, length, size);
+                }
+                size += length;
+            }
+            raf.setLength(size);
+        } finally {
+            pool.releaseDirect(buffer);
+            IOStreamUtils.closeQuietly(is);
+            if (raf != null) {
+                raf.close();
+            }
+        }
+        return new CopyStatistics(1, written, 0, System.nanoTime() - start);
+    }
+
+    private static int write(final FileChannel out, final ByteBuffer buffer, final int from, final int to,
+            final long position) throws IOException {
+        final ByteBuffer data = buffer.duplicate();
+        data.limit(to);
+        data.position(from);
+        while (data.hasRemaining()) {
+            out.write(data, position + data.position());
+        }
+        return to - from;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * TreeCopier class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Copies a directory tree using a bounded work-stealing pool. The whole directory structure is
+ * created first, then the files are copied ordered by size class, largest first, so big files do
+ * not end up as the tail of the copy. Small files are grouped into batches of at most 64 files or
+ * 4 MB, whichever is reached first.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class TreeCopier {
+    private static final long SMALL_FILE_SIZE = 65536L;
+    private static final long LARGE_FILE_SIZE = 16777216L;
+    private static final long BATCH_SIZE = 4194304L;
+    private static final int MAX_FILES_PER_BATCH = 64;
+
+    private static class Entry {
+        private final File source;
+        private final File destination;
+        private final long size;
+
+        private Entry(final File source, final File destination) {
+            this.source = source;
+            this.destination = destination;
+            this.size = source.length();
+        }
+
+        private int getSizeClass() {
+            if (this.size >= LARGE_FILE_SIZE) {
+                return 2;
+            } else if (this.size >= SMALL_FILE_SIZE) {
+                return 1;
+            }
+            return 0;
+        }
+    }
+
+    private static class CopyTask extends RecursiveTask<CopyStatistics> {
+        private static final long serialVersionUID = -2745319046723880167L;
+        private final List<Entry> entries;
+        private final Map<File, Exception> failures;
+        private final int from;
+        private final int to;
+
+        private CopyTask(final List<Entry> entries, final Map<File, Exception> failures, final int from,
+                final int to) {
+            this.entries = entries;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CopyStatistics compute() {
+            if (this.to - this.from > 1) {
+                long bytes = 0;
+                if (this.to - this.from <= MAX_FILES_PER_BATCH) {
+                    for (int i = this.from; i < this.to; i++) {
+                        bytes += this.entries.get(i).size;
+                    }
+                }
+                if ((this.to - this.from > MAX_FILES_PER_BATCH) || (bytes > BATCH_SIZE)) {
+                    final int middle = (this.from + this.to) >>> 1;
+                    final CopyTask left = new CopyTask(this.entries, this.failures, this.from, middle);
+                    final CopyTask right = new CopyTask(this.entries, this.failures, middle, this.to);
+                    left.fork();
+                    final CopyStatistics statistics = right.compute();
+                    return statistics.add(left.join());
+                }
+            }
+
+            CopyStatistics statistics = new CopyStatistics(0, 0, 0, 0);
+            for (int i = this.from; i < this.to; i++) {
+                final Entry entry = this.entries.get(i);
+                try {
+                    statistics = statistics.add(FileUtils.copyRegularFile(entry.source, entry.destination));
+                } catch (final Exception e) {
+                    this.failures.put(entry.source, e);
+                }
+            }
+            return statistics;
+        }
+    }
+
+    private final int parallelism;
+
+    public TreeCopier(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("invalid parallelism");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Copy the source directory into the destination directory
+     */
+    public TreeCopyResult copy(final File source, final File destination) {
+        final long start = System.nanoTime();
+        final Map<File, Exception> failures = new ConcurrentHashMap<File, Exception>();
+        final List<Entry> entries = new ArrayList<Entry>();
+        if (source.isDirectory()) {
+            scan(source, destination, entries, failures);
+        } else if (source.isFile()) {
+            entries.add(new Entry(source, destination));
+        } else {
+            failures.put(source, new IOException("file not found"));
+        }
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(final Entry e1, final Entry e2) {
+                return e2.getSizeClass() - e1.getSizeClass();
+            }
+        });
+
+        CopyStatistics statistics = new CopyStatistics(0, 0, 0, 0);
+        if (!entries.isEmpty()) {
+            final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try {
+                statistics = pool.invoke(new CopyTask(entries, failures, 0, entries.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        statistics = new CopyStatistics(statistics.getFiles(), statistics.getBytes(),
+                statistics.getTransferredBytes(), System.nanoTime() - start);
+        return new TreeCopyResult(statistics, new HashMap<File, Exception>(failures));
+    }
+
+    private static void scan(final File source, final File destination, final List<Entry> entries,
+            final Map<File, Exception> failures) {
+        if (!destination.exists() && !destination.mkdirs()) {
+            failures.put(source, new IOException("cannot create directory " + destination.getAbsolutePath()));
+            return;
+        }
+        final File[] files = source.listFiles();
+        if (files == null) {
+            failures.put(source, new IOException("cannot list directory"));
+            return;
+        }
+        for (final File f : files) {
+            final File target = new File(destination.getAbsolutePath(), f.getName());
+            if (f.isDirectory()) {
+                scan(f, target, entries, failures);
+            } else if (f.isFile()) {
+                entries.add(new Entry(f, target));
+            }
+        }
+    }
+}
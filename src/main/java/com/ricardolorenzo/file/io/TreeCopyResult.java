@@ -0,0 +1,61 @@
+/*
+ * TreeCopyResult class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a directory tree copy. Files that could not be copied are reported here instead of
+ * aborting the whole copy.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class TreeCopyResult {
+    private final CopyStatistics statistics;
+    private final Map<File, Exception> failures;
+
+    public TreeCopyResult(final CopyStatistics statistics, final Map<File, Exception> failures) {
+        this.statistics = statistics;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Source files that failed, with the exception raised for each one
+     */
+    public Map<File, Exception> getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Aggregated statistics. The elapsed time is the wall-clock time of the whole copy.
+     */
+    public CopyStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    public boolean isSuccessful() {
+        return this.failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return this.statistics.toString() + ", failures=" + this.failures.size();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * XXHash32 class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.io;
+
+import java.util.zip.Checksum;
+
+/**
+ * xxHash32 checksum, as used by the LZ4 frame format. Data can be added in pieces of any size.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class XXHash32 implements Checksum {
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private final int seed;
+    private final byte[] pending;
+    private int pending_length;
+    private int v1;
+    private int v2;
+    private int v3;
+    private int v4;
+    private long length;
+
+    public XXHash32() {
+        this(0);
+    }
+
+    public XXHash32(final int seed) {
+        this.seed = seed;
+        this.pending = new byte[16];
+        reset();
+    }
+
+    /**
+     * Returns the hash of the given bytes
+     */
+    public static int hash(final byte[] b, final int offset, final int length, final int seed) {
+        final XXHash32 hash = new XXHash32(seed);
+        hash.update(b, offset, length);
+        return (int) hash.getValue();
+    }
+
+    private static int getInt(final byte[] b, final int offset) {
+        return (b[offset] & 0xff) | ((b[offset + 1] & 0xff) << 8) | ((b[offset + 2] & 0xff) << 16)
+                | ((b[offset + 3] & 0xff) << 24);
+    }
+
+    private static int round(final int value, final int lane) {
+        return Integer.rotateLeft(value + lane * PRIME2, 13) * PRIME1;
+    }
+
+    @Override
+    public long getValue() {
+        int h;
+        if (this.length >= 16) {
+            h = Integer.rotateLeft(this.v1, 1) + Integer.rotateLeft(this.v2, 7) + Integer.rotateLeft(this.v3, 12)
+                    + Integer.rotateLeft(this.v4, 18);
+        } else {
+            h = this.seed + PRIME5;
+        }
+        h += (int) this.length;
+        int i = 0;
+        for (; i + 4 <= this.pending_length; i += 4) {
+            h = Integer.rotateLeft(h + getInt(this.pending, i) * PRIME3, 17) * PRIME4;
+        }
+        for (; i < this.pending_length; i++) {
+            h = Integer.rotateLeft(h + (this.pending[i] & 0xff) * PRIME5, 11) * PRIME1;
+        }
+        h ^= h >>> 15;
+        h *= PRIME2;
+        h ^= h >>> 13;
+        h *= PRIME3;
+        h ^= h >>> 16;
+        return h & 0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+        this.v1 = this.seed + PRIME1 + PRIME2;
+        this.v2 = this.seed + PRIME2;
+        this.v3 = this.seed;
+        this.v4 = this.seed - PRIME1;
+        this.pending_length = 0;
+        this.length = 0;
+    }
+
+    @Override
+    public void update(final byte[] b, int offset, int length) {
+        this.length += length;
+        if (this.pending_length > 0) {
+            final int count = Math.min(length, 16 - this.pending_length);
+            System.arraycopy(b, offset, this.pending, this.pending_length, count);
+            this.pending_length += count;
+            offset += count;
+            length -= count;
+            if (this.pending_length < 16) {
+                return;
+            }
+            stripe(this.pending, 0);
+            this.pending_length = 0;
+        }
+        for (; length >= 16; offset += 16, length -= 16) {
+            stripe(b, offset);
+        }
+        System.arraycopy(b, offset, this.pending, 0, length);
+        this.pending_length = length;
+    }
+
+    @Override
+    public void update(final int b) {
+        update(new byte[] { (byte) b }, 0, 1);
+    }
+
+    private void stripe(final byte[] b, final int offset) {
+        this.v1 = round(this.v1, getInt(b, offset));
+        this.v2 = round(this.v2, getInt(b, offset + 4));
+        this.v3 = round(this.v3, getInt(b, offset + 8));
+        this.v4 = round(this.v4, getInt(b, offset + 12));
+    }
+}
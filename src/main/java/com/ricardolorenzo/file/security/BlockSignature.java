@@ -0,0 +1,131 @@
+/*
+ * BlockSignature class
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If
+ * not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Author: Ricardo Lorenzo <unshakablespirit@gmail.com>
+ */
+package com.ricardolorenzo.file.security;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+
+import com.ricardolorenzo.file.io.IOStreamUtils;
+
+/**
+ * Per block checksums of a file, made of a cheap weak Adler-32 sum and a strong MD5 digest. A block
+ * is compared through its weak sum first, and the strong digest is only computed when the weak
+ * sums match.
+ * 
+ * @author Ricardo Lorenzo
+ * 
+ */
+public class BlockSignature {
+    private final int block_size;
+    private final long size;
+    private final long[] weak_sums;
+    private final byte[][] strong_sums;
+
+    private BlockSignature(final int blockSize, final long size, final long[] weakSums, final byte[][] strongSums) {
+        this.block_size = blockSize;
+        this.size = size;
+        this.weak_sums = weakSums;
+        this.strong_sums = strongSums;
+    }
+
+    public static BlockSignature getSignature(final File file, final int blockSize) throws NoSuchAlgorithmException,
+            IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("invalid block size");
+        }
+        final FileInputStream is = new FileInputStream(file);
+        try {
+            final FileChannel channel = is.getChannel();
+            final long size = channel.size();
+            final int blocks = (int) ((size + blockSize - 1) / blockSize);
+            final long[] weakSums = new long[blocks];
+            final byte[][] strongSums = new byte[blocks][];
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            final Adler32 weak = new Adler32();
+            final ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+            for (int i = 0; i < blocks; i++) {
+                buffer.clear();
+                readBlock(channel, buffer, (long) i * blockSize);
+                weak.reset();
+                weak.update(buffer.array(), 0, buffer.limit());
+                weakSums[i] = weak.getValue();
+                digest.update(buffer.array(), 0, buffer.limit());
+                strongSums[i] = digest.digest();
+            }
+            return new BlockSignature(blockSize, size, weakSums, strongSums);
+        } finally {
+            IOStreamUtils.closeQuietly(is);
+        }
+    }
+
+    private static void readBlock(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, offset);
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+        }
+        buffer.flip();
+    }
+
+    public int getBlockCount() {
+        return this.weak_sums.length;
+    }
+
+    public int getBlockSize() {
+        return this.block_size;
+    }
+
+    /**
+     * Size of the file when the signature was taken
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Check whether the data matches the block at the given index
+     */
+    public boolean matches(final int block, final byte[] data, final int offset, final int length)
+            throws NoSuchAlgorithmException {
+        if ((block < 0) || (block >= this.weak_sums.length)) {
+            return false;
+        }
+        final long blockLength = Math.min(this.block_size, this.size - ((long) block * this.block_size));
+        if (blockLength != length) {
+            return false;
+        }
+        final Adler32 weak = new Adler32();
+        weak.update(data, offset, length);
+        if (weak.getValue() != this.weak_sums[block]) {
+            return false;
+        }
+        final MessageDigest digest = MessageDigest.getInstance("MD5");
+        digest.update(data, offset, length);
+        return Arrays.equals(digest.digest(), this.strong_sums[block]);
+    }
+}
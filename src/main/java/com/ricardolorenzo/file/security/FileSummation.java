@@ -31,6 +31,8 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import com.ricardolorenzo.file.io.BufferPool;
+import com.ricardolorenzo.file.io.BufferPools;
 import com.ricardolorenzo.file.io.IOStreamUtils;
 
 public class FileSummation {
@@ -60,7 +62,8 @@ public class FileSummation {
 
     private static String getMD5Summation(final InputStream is) throws NoSuchAlgorithmException, IOException {
         final MessageDigest digest = MessageDigest.getInstance("MD5");
-        final byte[] buffer = new byte[8192];
+        final BufferPool pool = BufferPools.getPool();
+        final byte[] buffer = pool.acquireArray(BufferPools.getBufferSize(is));
         int read = 0;
         try {
             while ((read = is.read(buffer)) > 0) {
@@ -70,6 +73,7 @@ public class FileSummation {
             final BigInteger bi = new BigInteger(1, _md5sum);
             return bi.toString(16);
         } finally {
+            pool.releaseArray(buffer);
             IOStreamUtils.closeQuietly(is);
         }
     }